@@ -0,0 +1,42 @@
+package info.semsamot.introlayout;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.widget.Button;
+import android.widget.FrameLayout;
+
+/**
+ * Screen with a few buttons to point a tour at.
+ */
+public class IntroTestActivity extends Activity {
+
+    public static final int ID_TOP = 1;
+    public static final int ID_MIDDLE = 2;
+    public static final int ID_BOTTOM = 3;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        FrameLayout root = new FrameLayout(this);
+        root.addView(button(ID_TOP, "top"), params(Gravity.TOP | Gravity.LEFT));
+        root.addView(button(ID_MIDDLE, "middle"), params(Gravity.CENTER));
+        root.addView(button(ID_BOTTOM, "bottom"), params(Gravity.BOTTOM | Gravity.RIGHT));
+        setContentView(root);
+    }
+
+    private Button button(int id, String text)
+    {
+        Button button = new Button(this);
+        button.setId(id);
+        button.setText(text);
+        return button;
+    }
+
+    private FrameLayout.LayoutParams params(int gravity)
+    {
+        return new FrameLayout.LayoutParams(FrameLayout.LayoutParams.WRAP_CONTENT,
+                FrameLayout.LayoutParams.WRAP_CONTENT, gravity);
+    }
+}
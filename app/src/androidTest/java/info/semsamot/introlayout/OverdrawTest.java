@@ -0,0 +1,124 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+import android.view.View;
+
+/**
+ * Measures the overlay fill in pixels: the overlay is drawn alone into a
+ * bitmap and every pixel it touched is counted. Under an opaque content
+ * panel nothing may be filled, under a transparent one everything.
+ */
+public class OverdrawTest extends ActivityInstrumentationTestCase2<IntroTestActivity> {
+
+    private static final String TAG = "OverdrawTest";
+
+    private IntroLayout introLayout;
+    private Rect panel = new Rect();
+    private int panelFilled, outsideFilled;
+
+    public OverdrawTest() {
+        super(IntroTestActivity.class);
+    }
+
+    public void testOpaquePanelIsNotFilled() throws Throwable {
+        startTour();
+
+        for (final IntroLayout.RenderMode mode : IntroLayout.RenderMode.values())
+        for (final boolean isCached : new boolean[]{ false, true })
+        {
+            measure(mode, isCached);
+
+            String name = mode + (isCached ? "/cached" : "");
+            Log.i(TAG, name + ": " + panel.width() * panel.height()
+                    + " panel pixels skipped, " + outsideFilled + " filled");
+
+            assertEquals(name, 0, panelFilled);
+            assertTrue(name, outsideFilled > 0);
+        }
+    }
+
+    public void testTransparentPanelIsFilled() throws Throwable {
+        startTour();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                introLayout.disableContentLayoutBackground();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        for (final IntroLayout.RenderMode mode : IntroLayout.RenderMode.values())
+        {
+            measure(mode, false);
+            assertEquals(mode.toString(), panel.width() * panel.height(), panelFilled);
+        }
+    }
+
+    private void startTour() throws Throwable
+    {
+        final IntroTestActivity activity = getActivity();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                IntroController controller = new IntroController(activity);
+                controller.setSteps(new IntroStep[]{
+                        new IntroStep("overdraw", IntroTestActivity.ID_MIDDLE) });
+                controller.startShow();
+
+                // everything but the overlay drawn invisible, so only its fill is counted
+                introLayout = controller.getIntroLayout();
+                introLayout.setStepTransitionDuration(0);
+                introLayout.setTargetHighlightColor(Color.TRANSPARENT);
+                introLayout.setTargetShapeBorderColor(Color.TRANSPARENT);
+                introLayout.setArrowColor(Color.TRANSPARENT);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void measure(final IntroLayout.RenderMode mode, final boolean isCached) throws Throwable
+    {
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                introLayout.setRenderMode(mode);
+                introLayout.setOverlayCacheEnabled(isCached);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                View contentLayout = introLayout.findViewById(R.id.content_layout);
+                // antialiased panel edges may be partly covered
+                panel.set(contentLayout.getLeft() + 1, contentLayout.getTop() + 1,
+                        contentLayout.getRight() - 1, contentLayout.getBottom() - 1);
+
+                Bitmap bitmap = Bitmap.createBitmap(introLayout.getWidth(), introLayout.getHeight(),
+                        Bitmap.Config.ARGB_8888);
+                introLayout.onDraw(new Canvas(bitmap));
+
+                panelFilled = outsideFilled = 0;
+                for (int y = 0; y < bitmap.getHeight(); y++)
+                for (int x = 0; x < bitmap.getWidth(); x++)
+                {
+                    if (Color.alpha(bitmap.getPixel(x, y)) == 0) continue;
+
+                    if (panel.contains(x, y))
+                        panelFilled++;
+                    else
+                        outsideFilled++;
+                }
+                bitmap.recycle();
+            }
+        });
+    }
+}
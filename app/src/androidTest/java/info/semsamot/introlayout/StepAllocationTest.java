@@ -0,0 +1,115 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.ActivityInstrumentationTestCase2;
+
+/**
+ * Changing steps and drawing frames reuse the geometry objects of
+ * IntroLayout, in steady state neither may allocate.
+ */
+public class StepAllocationTest extends ActivityInstrumentationTestCase2<IntroTestActivity> {
+
+    private static final int STEP_ALLOCATION_BUDGET = 0;
+    private static final int FRAME_ALLOCATION_BUDGET = 0;
+    private static final int STEPS = 200;
+    private static final int FRAMES = 200;
+
+    private IntroController controller;
+    private IntroLayout introLayout;
+    private IntroTarget[] stepA, stepB, stepC;
+    private int allocations;
+
+    public StepAllocationTest() {
+        super(IntroTestActivity.class);
+    }
+
+    public void testStepChangeDoesNotAllocate() throws Throwable {
+        startTour();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                // the first round grows target arrays and fills shape templates
+                changeSteps(3);
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+
+                changeSteps(STEPS);
+
+                allocations = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+            }
+        });
+
+        assertTrue("allocated " + allocations + " objects in " + STEPS + " step changes",
+                allocations <= STEP_ALLOCATION_BUDGET * STEPS);
+    }
+
+    public void testFrameDoesNotAllocate() throws Throwable {
+        startTour();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                introLayout.setIntroTargets(stepB);
+
+                Bitmap bitmap = Bitmap.createBitmap(introLayout.getWidth(), introLayout.getHeight(),
+                        Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(bitmap);
+                introLayout.onDraw(canvas);
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+
+                for (int i = 0; i < FRAMES; i++)
+                    introLayout.onDraw(canvas);
+
+                allocations = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+                bitmap.recycle();
+            }
+        });
+
+        assertTrue("allocated " + allocations + " objects in " + FRAMES + " frames",
+                allocations <= FRAME_ALLOCATION_BUDGET * FRAMES);
+    }
+
+    private void startTour() throws Throwable
+    {
+        final IntroTestActivity activity = getActivity();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                stepA = new IntroTarget[]{ new IntroTarget(IntroTestActivity.ID_TOP) };
+                stepB = new IntroTarget[]{ new IntroTarget(IntroTestActivity.ID_MIDDLE),
+                        new IntroTarget(IntroTestActivity.ID_BOTTOM) };
+                stepC = new IntroTarget[]{ new IntroTarget(IntroTestActivity.ID_BOTTOM) };
+
+                controller = new IntroController(activity);
+                controller.setSteps(new IntroStep[]{ new IntroStep("allocations", stepA) });
+                controller.startShow();
+
+                introLayout = controller.getIntroLayout();
+                // transitions run on frame callbacks, outside of the measured step change
+                introLayout.setStepTransitionDuration(0);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void changeSteps(int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            switch (i % 3) {
+                case 0: introLayout.setIntroTargets(stepA); break;
+                case 1: introLayout.setIntroTargets(stepB); break;
+                default: introLayout.setIntroTargets(stepC);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package info.semsamot.introlayout;
+
+import android.app.Activity;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * A controller outliving its activity must not keep the activity or the
+ * target views alive, whether the tour ended or the activity went away mid tour.
+ */
+public class TargetLeakTest extends ActivityInstrumentationTestCase2<IntroTestActivity> {
+
+    private static final int GC_ATTEMPTS = 20;
+
+    private IntroController controller;
+    private WeakReference<Activity> activityRef;
+    private WeakReference<View> targetRef;
+
+    public TargetLeakTest() {
+        super(IntroTestActivity.class);
+    }
+
+    public void testEndedTourReleasesActivity() throws Throwable {
+        startTour();
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                IntroLayout introLayout = controller.getIntroLayout();
+                controller.nextShow(introLayout);
+                controller.nextShow(introLayout);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        assertFalse(controller.isShowing());
+
+        finishActivity();
+        assertReleased();
+    }
+
+    public void testDestroyedActivityReleasesTour() throws Throwable {
+        startTour();
+        assertTrue(controller.isShowing());
+
+        finishActivity();
+        assertReleased();
+    }
+
+    /* kept out of the test methods, so no local keeps the activity reachable */
+    private void startTour() throws Throwable
+    {
+        final IntroTestActivity activity = getActivity();
+        activityRef = new WeakReference<Activity>(activity);
+        targetRef = new WeakReference<View>(activity.findViewById(IntroTestActivity.ID_TOP));
+
+        runTestOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                controller = new IntroController(activity);
+                controller.setSteps(new IntroStep[]{
+                        new IntroStep("weak", IntroTarget.weak(
+                                activity.findViewById(IntroTestActivity.ID_TOP))),
+                        new IntroStep("by id", IntroTestActivity.ID_MIDDLE)
+                });
+                controller.startShow();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void finishActivity()
+    {
+        getActivity().finish();
+        setActivity(null);
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void assertReleased() throws InterruptedException
+    {
+        for (int i = 0; i < GC_ATTEMPTS && (activityRef.get() != null || targetRef.get() != null); i++)
+        {
+            Runtime.getRuntime().gc();
+            System.runFinalization();
+            Thread.sleep(100);
+        }
+
+        assertNull("activity leaked", activityRef.get());
+        assertNull("target view leaked", targetRef.get());
+    }
+}
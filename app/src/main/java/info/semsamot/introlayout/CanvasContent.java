@@ -0,0 +1,266 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+
+/**
+ * Content panel of IntroLayout drawn straight to its canvas, a stand-in for
+ * the content_layout views with the same metrics as intro_layout.xml.
+ * A step change costs a draw instead of measure and layout passes, the
+ * message StaticLayout is only rebuilt when the text or the width changes.
+ *
+ * The inflated views stay the source of style and behaviour, colors and
+ * text are read from them and taps end up in Button.performClick(), so
+ * click listeners set on btn_next and btn_previous keep working.
+ */
+class CanvasContent {
+
+    /* dp values of intro_layout.xml */
+    private static final int TEXT_MARGIN = 10;
+    private static final int ROW_PADDING = 5;
+    private static final int BUTTON_MARGIN = 5;
+    private static final int BUTTON_HEIGHT = 30;
+    private static final int BUTTON_MIN_WIDTH = 50;
+    private static final int BUTTON_TEXT_PADDING = 10;
+
+    private final float density;
+    private final TextView txtContent;
+    private final Button[] buttons;
+
+    private final TextPaint textPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint buttonTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint backgroundPaint = new Paint();
+    private final Paint buttonPaint = new Paint();
+    private float lineSpacingMultiplier = 1.2f;
+
+    final Rect panelRect = new Rect();
+    private final Rect[] buttonRects;
+    private int pressedButton = -1;
+
+    private CharSequence message;
+    private StaticLayout messageLayout;
+
+    CanvasContent(float density, TextView txtContent, Button... buttons) {
+        this.density = density;
+        this.txtContent = txtContent;
+        this.buttons = buttons;
+        this.buttonRects = new Rect[buttons.length];
+        for (int i = 0; i < buttons.length; i++)
+            buttonRects[i] = new Rect();
+
+        buttonTextPaint.setTextAlign(Paint.Align.CENTER);
+    }
+
+    /* copies colors and text attributes from the views, the message layout is rebuilt */
+    void syncStyle(View contentLayout)
+    {
+        textPaint.set(txtContent.getPaint());
+        textPaint.setColor(txtContent.getCurrentTextColor());
+        if (Build.VERSION.SDK_INT >= 16)
+            lineSpacingMultiplier = txtContent.getLineSpacingMultiplier();
+
+        backgroundPaint.setColor(colorOf(contentLayout.getBackground()));
+
+        // buttons share one style in the layout
+        Button button = buttons[0];
+        buttonPaint.setColor(colorOf(button.getBackground()));
+        buttonTextPaint.setTextSize(button.getTextSize());
+        buttonTextPaint.setTypeface(button.getTypeface());
+        buttonTextPaint.setColor(button.getCurrentTextColor());
+
+        messageLayout = null;
+    }
+
+    private static int colorOf(Drawable drawable)
+    {
+        return drawable instanceof ColorDrawable
+                ? ((ColorDrawable) drawable).getColor() : Color.TRANSPARENT;
+    }
+
+    boolean isOpaque()
+    {
+        return Color.alpha(backgroundPaint.getColor()) == 255;
+    }
+
+    TextPaint getTextPaint() {
+        return textPaint;
+    }
+
+    float getLineSpacingMultiplier() {
+        return lineSpacingMultiplier;
+    }
+
+    int getTextWidth(int viewWidth)
+    {
+        return viewWidth - 2 * dp(TEXT_MARGIN);
+    }
+
+    /* @return false when the message did not change */
+    boolean setMessage(CharSequence message)
+    {
+        if (message == null ? this.message == null : message.equals(this.message))
+            return false;
+
+        this.message = message;
+        this.messageLayout = null;
+        return true;
+    }
+
+    /* message with a layout built in the background, used when its width still fits */
+    void setMessageLayout(CharSequence message, StaticLayout layout)
+    {
+        this.message = message;
+        this.messageLayout = layout;
+    }
+
+    /* places the panel at the top or bottom of a view of the given size */
+    void layout(int viewWidth, int viewHeight, boolean isAtTop)
+    {
+        int textWidth = Math.max(getTextWidth(viewWidth), 0);
+
+        if (messageLayout == null || messageLayout.getWidth() != textWidth)
+            messageLayout = message != null && textWidth > 0
+                    ? new StaticLayout(message, textPaint, textWidth,
+                            Layout.Alignment.ALIGN_NORMAL, lineSpacingMultiplier, 0, true)
+                    : null;
+
+        int textHeight = messageLayout != null ? messageLayout.getHeight() : 0;
+        int rowHeight = 2 * dp(ROW_PADDING) + 2 * dp(BUTTON_MARGIN) + dp(BUTTON_HEIGHT);
+        int panelHeight = 2 * dp(TEXT_MARGIN) + textHeight + rowHeight;
+
+        int top = isAtTop ? 0 : viewHeight - panelHeight;
+        panelRect.set(0, top, viewWidth, top + panelHeight);
+
+        // button row is right aligned below the text, in the order of the layout
+        int rowWidth = 0;
+        for (int i = 0; i < buttons.length; i++)
+            if (buttons[i].getVisibility() == View.VISIBLE)
+                rowWidth += buttonWidth(buttons[i]) + 2 * dp(BUTTON_MARGIN);
+
+        int x = viewWidth - dp(ROW_PADDING) - rowWidth;
+        int y = top + 2 * dp(TEXT_MARGIN) + textHeight + dp(ROW_PADDING) + dp(BUTTON_MARGIN);
+        for (int i = 0; i < buttons.length; i++)
+        {
+            if (buttons[i].getVisibility() != View.VISIBLE) {
+                buttonRects[i].setEmpty();
+                continue;
+            }
+
+            x += dp(BUTTON_MARGIN);
+            int width = buttonWidth(buttons[i]);
+            buttonRects[i].set(x, y, x + width, y + dp(BUTTON_HEIGHT));
+            x += width + dp(BUTTON_MARGIN);
+        }
+    }
+
+    private int buttonWidth(Button button)
+    {
+        CharSequence text = button.getText();
+        int textWidth = (int) Math.ceil(buttonTextPaint.measureText(text, 0, text.length()));
+        return Math.max(dp(BUTTON_MIN_WIDTH), textWidth + 2 * dp(BUTTON_TEXT_PADDING));
+    }
+
+    void draw(Canvas canvas)
+    {
+        if (panelRect.isEmpty()) return;
+
+        if (backgroundPaint.getAlpha() != 0)
+            canvas.drawRect(panelRect, backgroundPaint);
+
+        if (messageLayout != null)
+        {
+            canvas.save();
+            canvas.translate(panelRect.left + dp(TEXT_MARGIN), panelRect.top + dp(TEXT_MARGIN));
+            messageLayout.draw(canvas);
+            canvas.restore();
+        }
+
+        float textOffset = (buttonTextPaint.descent() + buttonTextPaint.ascent()) / 2;
+        for (int i = 0; i < buttons.length; i++)
+        {
+            Rect rect = buttonRects[i];
+            if (rect.isEmpty()) continue;
+
+            buttonPaint.setAlpha(i == pressedButton ? 0xb0 : 0xff);
+            canvas.drawRect(rect, buttonPaint);
+
+            CharSequence text = buttons[i].getText();
+            canvas.drawText(text, 0, text.length(),
+                    rect.exactCenterX(), rect.exactCenterY() - textOffset, buttonTextPaint);
+        }
+    }
+
+    /*
+     * Presses a button on down and clicks it on up inside the same button.
+     * @return true when the event belongs to the panel
+     */
+    boolean onTouchEvent(MotionEvent event)
+    {
+        int x = (int) event.getX(), y = (int) event.getY();
+
+        switch (event.getActionMasked())
+        {
+            case MotionEvent.ACTION_DOWN:
+                pressedButton = buttonAt(x, y);
+                return panelRect.contains(x, y);
+
+            case MotionEvent.ACTION_MOVE:
+                if (pressedButton != -1 && !buttonRects[pressedButton].contains(x, y))
+                    pressedButton = -1;
+                return panelRect.contains(x, y);
+
+            case MotionEvent.ACTION_UP:
+                int clicked = pressedButton;
+                pressedButton = -1;
+                if (clicked != -1 && buttonRects[clicked].contains(x, y))
+                    buttons[clicked].performClick();
+                return panelRect.contains(x, y);
+
+            case MotionEvent.ACTION_CANCEL:
+                pressedButton = -1;
+                return false;
+        }
+        return false;
+    }
+
+    private int buttonAt(int x, int y)
+    {
+        for (int i = 0; i < buttons.length; i++)
+            if (buttonRects[i].contains(x, y))
+                return i;
+        return -1;
+    }
+
+    private int dp(int value)
+    {
+        return (int) (value * density + 0.5f);
+    }
+}
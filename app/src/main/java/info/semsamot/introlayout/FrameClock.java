@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Single vsync driven clock for everything animated in {@link IntroLayout}.
+ * Uses {@link Choreographer} on API 16+ and a ~60fps handler loop below that.
+ */
+class FrameClock {
+
+    private static final long LEGACY_FRAME_DELAY = 16;
+
+    interface OnFrameListener
+    {
+        /** @return true to be called again on the next frame */
+        boolean onFrame(long frameTimeNanos);
+    }
+
+    private final OnFrameListener onFrameListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Object frameCallback;
+    private Runnable legacyFrameRunnable;
+
+    private boolean isRunning;
+    private boolean isFrameScheduled;
+
+    FrameClock(OnFrameListener onFrameListener) {
+        this.onFrameListener = onFrameListener;
+    }
+
+    void start()
+    {
+        if (isRunning) return;
+
+        isRunning = true;
+        scheduleFrame();
+    }
+
+    void stop()
+    {
+        if (!isRunning) return;
+
+        isRunning = false;
+        cancelFrame();
+    }
+
+    boolean isRunning() {
+        return isRunning;
+    }
+
+    private void dispatchFrame(long frameTimeNanos)
+    {
+        isFrameScheduled = false;
+
+        if (!isRunning) return;
+
+        if (onFrameListener.onFrame(frameTimeNanos))
+            scheduleFrame();
+        else
+            isRunning = false;
+    }
+
+    @SuppressLint("NewApi")
+    private void scheduleFrame()
+    {
+        if (isFrameScheduled) return;
+        isFrameScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= 16) {
+            if (frameCallback == null)
+            {
+                frameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        dispatchFrame(frameTimeNanos);
+                    }
+                };
+            }
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        } else {
+            if (legacyFrameRunnable == null)
+            {
+                legacyFrameRunnable = new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchFrame(System.nanoTime());
+                    }
+                };
+            }
+            handler.postDelayed(legacyFrameRunnable, LEGACY_FRAME_DELAY);
+        }
+    }
+
+    @SuppressLint("NewApi")
+    private void cancelFrame()
+    {
+        if (!isFrameScheduled) return;
+        isFrameScheduled = false;
+
+        if (Build.VERSION.SDK_INT >= 16) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+        } else {
+            handler.removeCallbacks(legacyFrameRunnable);
+        }
+    }
+}
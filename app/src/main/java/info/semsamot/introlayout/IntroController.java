@@ -18,58 +18,271 @@
 
 package info.semsamot.introlayout;
 
+import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.app.Application;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.Window;
-import android.widget.TextView;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import info.semsamot.introlayout.tour.TourDefinition;
 
 public class IntroController {
 
-    private final IntroLayout introLayout;
+    private static final long PREFETCH_DELAY = 100;
+
+    private static final String STATE_SHOWING = "introlayout:showing";
+    private static final String STATE_INDEX = "introlayout:index";
+    private static final String STATE_TOUR_ID = "introlayout:tourId";
+    private static final String STATE_PENDING = "introlayout:pending";
+
+    private static ExecutorService prefetchExecutor;
+
+    private IntroLayout introLayout;
+    private long inflationTimeNanos = -1;
+    private MessageQueue.IdleHandler preloadIdleHandler;
 
-    private Activity mActivity;
+    /* weak, a controller outliving its activity must not keep it alive */
+    private WeakReference<Activity> activityRef;
+    private Application.ActivityLifecycleCallbacks lifecycleCallbacks;
+    private Application lifecycleApplication;
     private int layoutResId;
     private ViewGroup rootView;
     private IntroTarget[] targets;
     private String[] messages;
+    private IntroStep[] steps;
     private OnShowChangeListener onShowChangeListener;
+    private OnLayoutInflatedListener onLayoutInflatedListener;
     private int currentShowIndex = -1;
+    private String tourId;
+    private TourProgressStore progressStore;
+    /* startShowOnce() waiting for the progress store */
+    private boolean isStartPending;
+
+    private boolean isPrefetchEnabled = false;
+    private PreparedStep preparedNext, preparedPrevious;
+    private int prefetchGeneration;
+    private Runnable prefetchRunnable;
 
     public IntroController(Activity mActivity) {
         this(mActivity, R.layout.intro_layout);
     }
 
     public IntroController(Activity mActivity, int layoutResId) {
-        this.mActivity = mActivity;
+        // inflation is deferred to startShow() or preload(), keeping it off onCreate
+        this.activityRef = new WeakReference<Activity>(mActivity);
         this.layoutResId = layoutResId;
+    }
 
-        if (mActivity == null)
-        {
-            this.introLayout = null;
+    private Activity getActivity()
+    {
+        return activityRef.get();
+    }
+
+    /* a rotation destroys the activity without finishing it */
+    @SuppressLint("NewApi")
+    private static boolean isGone(Activity activity)
+    {
+        return activity == null || activity.isFinishing()
+                || (Build.VERSION.SDK_INT >= 17 && activity.isDestroyed());
+    }
+
+    /* inflates the intro layout the next time the main thread is idle */
+    public void preload()
+    {
+        if (introLayout != null || preloadIdleHandler != null || getActivity() == null)
             return;
+
+        preloadIdleHandler = new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                preloadIdleHandler = null;
+                ensureIntroLayout();
+                return false;
+            }
+        };
+        Looper.myQueue().addIdleHandler(preloadIdleHandler);
+    }
+
+    private IntroLayout ensureIntroLayout()
+    {
+        Activity activity = getActivity();
+        if (introLayout != null || activity == null)
+            return introLayout;
+
+        if (preloadIdleHandler != null)
+        {
+            Looper.myQueue().removeIdleHandler(preloadIdleHandler);
+            preloadIdleHandler = null;
         }
 
-        this.introLayout = (IntroLayout) View.inflate(mActivity, layoutResId, null);
-        this.rootView = (ViewGroup) mActivity.getWindow().getDecorView().getRootView();
+        long start = System.nanoTime();
+        this.introLayout = (IntroLayout) View.inflate(activity, layoutResId, null);
+        this.inflationTimeNanos = System.nanoTime() - start;
+
+        wireIntroLayout(introLayout);
+
+        if (onLayoutInflatedListener != null)
+            onLayoutInflatedListener.onLayoutInflated(introLayout);
+
+        return introLayout;
     }
 
-    public void startShow()
+    /* listeners of a freshly inflated layout, added once per layout */
+    private void wireIntroLayout(IntroLayout introLayout)
     {
-        introLayout.animateTargetRect();
+        // prepared geometry is only valid for the size it was computed for
+        introLayout.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+            @Override
+            public void onLayoutChange(View v, int left, int top, int right, int bottom,
+                                       int oldLeft, int oldTop, int oldRight, int oldBottom) {
+                if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop)
+                    schedulePrefetch();
+            }
+        });
 
         introLayout.findViewById(R.id.btn_next).setOnClickListener(
                 new View.OnClickListener() {
                     @Override
                     public void onClick(View view) {
-                        nextShow(introLayout);
+                        if (introLayout != null)
+                            nextShow(introLayout);
                     }
                 }
         );
 
+        introLayout.setOnTargetTapListener(new IntroLayout.OnTargetTapListener() {
+            @Override
+            public void onTargetTap(final IntroLayout layout, View target) {
+                if (steps == null || currentShowIndex < 0 || currentShowIndex >= steps.length
+                        || !steps[currentShowIndex].advanceOnTargetTap)
+                    return;
+
+                // the target's own click runs first, it is queued by the same gesture
+                layout.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (introLayout == layout)
+                            nextShow(layout);
+                    }
+                });
+            }
+        });
+    }
+
+    public void startShow()
+    {
+        Activity activity = getActivity();
+        if (activity == null || ensureIntroLayout() == null)
+            return;
+
+        if (!isShowing())
+        {
+            this.rootView = (ViewGroup) activity.getWindow().getDecorView().getRootView();
+            introLayout.setTargetRoot(rootView);
+
+            if (Build.VERSION.SDK_INT >= 14)
+                registerLifecycleCallbacks(activity);
+
+            introLayout.animateTargetRect();
+        }
+
         nextShow(introLayout);
 
-        rootView.addView(introLayout);
+        // a restored index past the last step ends the tour right away
+        if (introLayout != null && introLayout.getParent() == null)
+            rootView.addView(introLayout);
+    }
+
+    /*
+     * Shows the tour unless it was completed before, resuming from the last
+     * seen step. Progress is read from and written to TourProgressStore
+     * without touching the disk on the main thread.
+     */
+    public void startShowOnce(final String tourId)
+    {
+        this.tourId = tourId;
+        Activity activity = getActivity();
+        if (activity == null) return;
+        this.progressStore = TourProgressStore.get(activity);
+        this.isStartPending = true;
+
+        progressStore.whenLoaded(new Runnable() {
+            @Override
+            public void run() {
+                Activity activity = getActivity();
+                if (isGone(activity) || !isStartPending) return;
+
+                isStartPending = false;
+                if (!progressStore.shouldShow(tourId))
+                    return;
+
+                currentShowIndex = Math.max(progressStore.getLastSeenStep(tourId), 0) - 1;
+                startShow();
+            }
+        });
+    }
+
+    public boolean isShowing()
+    {
+        return introLayout != null && rootView != null && introLayout.getParent() == rootView;
+    }
+
+    /* call from Activity.onSaveInstanceState() */
+    public void onSaveInstanceState(Bundle outState)
+    {
+        outState.putBoolean(STATE_SHOWING, isShowing());
+        outState.putBoolean(STATE_PENDING, isStartPending);
+        outState.putInt(STATE_INDEX, currentShowIndex);
+        outState.putString(STATE_TOUR_ID, tourId);
+    }
+
+    /*
+     * Resumes a tour that was showing when the state was saved, on the same step,
+     * or one startShowOnce() was still loading the progress of.
+     * Views do not outlive their activity, so set the steps or targets again first.
+     * The layout of the old activity cannot be shown in the new one either: a
+     * layout this controller already has, from preload() or a running tour, is
+     * reused, otherwise one is inflated like startShow() does.
+     * Do not fall back to startShow() on false, that restarts an ended tour.
+     * @return false when there was no tour to resume
+     */
+    public boolean restoreShow(Bundle savedInstanceState)
+    {
+        if (savedInstanceState == null) return false;
+
+        boolean isShowing = savedInstanceState.getBoolean(STATE_SHOWING);
+        boolean isPending = savedInstanceState.getBoolean(STATE_PENDING);
+        String savedTourId = savedInstanceState.getString(STATE_TOUR_ID);
+        if (!isShowing && !(isPending && savedTourId != null))
+            return false;
+
+        Activity activity = getActivity();
+        if (activity == null) return false;
+
+        if (!isShowing) {
+            // the store knows the step to resume from once it is loaded
+            startShowOnce(savedTourId);
+            return true;
+        }
+
+        this.tourId = savedTourId;
+        if (tourId != null)
+            this.progressStore = TourProgressStore.get(activity);
+
+        // startShow() steps forward into it
+        this.currentShowIndex = savedInstanceState.getInt(STATE_INDEX) - 1;
+        startShow();
+        return true;
     }
 
     public void nextShow(IntroLayout introLayout)
@@ -79,16 +292,17 @@ public class IntroController {
         if (onShowChangeListener != null)
             onShowChangeListener.beforeShowChanged(currentShowIndex);
 
-        if (currentShowIndex >= targets.length)
+        if (currentShowIndex >= getStepCount())
         {
-            rootView.removeView(introLayout);
+            endShow(introLayout);
+
+            if (progressStore != null)
+                progressStore.markCompleted(tourId);
             return;
         }
 
-        if (currentShowIndex < messages.length)
-            ((TextView) introLayout.findViewById(R.id.txt_content)).setText(messages[currentShowIndex]);
-
-        introLayout.setIntroTarget(targets[currentShowIndex]);
+        markStepRequested(introLayout);
+        showStep(introLayout, currentShowIndex);
 
         if (onShowChangeListener != null)
             onShowChangeListener.afterShowChanged(currentShowIndex);
@@ -108,17 +322,207 @@ public class IntroController {
             return;
         }
 
-        if (currentShowIndex < messages.length)
-            ((TextView) introLayout.findViewById(R.id.txt_content)).setText(messages[currentShowIndex]);
-
-        introLayout.setIntroTarget(targets[currentShowIndex]);
+        markStepRequested(introLayout);
+        showStep(introLayout, currentShowIndex);
 
         if (onShowChangeListener != null)
             onShowChangeListener.afterShowChanged(currentShowIndex);
     }
 
+    /* removes the intro and lets go of everything belonging to the activity */
+    private void endShow(IntroLayout introLayout)
+    {
+        isStartPending = false;
+        introLayout.stopAnimation();
+        introLayout.removeCallbacks(prefetchRunnable);
+        introLayout.setTargetRoot(null);
+        if (rootView != null)
+            rootView.removeView(introLayout);
+
+        prefetchGeneration++;
+        preparedNext = null;
+        preparedPrevious = null;
+
+        if (Build.VERSION.SDK_INT >= 14)
+            unregisterLifecycleCallbacks();
+
+        this.rootView = null;
+        this.introLayout = null;
+    }
+
+    @SuppressLint("NewApi")
+    private void registerLifecycleCallbacks(Activity activity)
+    {
+        if (lifecycleCallbacks != null) return;
+
+        lifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityDestroyed(Activity destroyed) {
+                // a tour does not survive its activity, a recreated one starts its own
+                if (destroyed == getActivity() && introLayout != null)
+                    endShow(introLayout);
+            }
+
+            @Override
+            public void onActivityCreated(Activity activity, Bundle savedInstanceState) {}
+            @Override
+            public void onActivityStarted(Activity activity) {}
+            @Override
+            public void onActivityResumed(Activity activity) {}
+            @Override
+            public void onActivityPaused(Activity activity) {}
+            @Override
+            public void onActivityStopped(Activity activity) {}
+            @Override
+            public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+        };
+        lifecycleApplication = activity.getApplication();
+        lifecycleApplication.registerActivityLifecycleCallbacks(lifecycleCallbacks);
+    }
+
+    @SuppressLint("NewApi")
+    private void unregisterLifecycleCallbacks()
+    {
+        if (lifecycleCallbacks == null) return;
+
+        lifecycleApplication.unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+        lifecycleCallbacks = null;
+        lifecycleApplication = null;
+    }
+
+    private void markStepRequested(IntroLayout introLayout)
+    {
+        IntroMetrics metrics = introLayout.getMetrics();
+        if (metrics != null)
+            metrics.markStepRequested();
+    }
+
+    private int getStepCount()
+    {
+        return steps != null ? steps.length : targets.length;
+    }
+
+    private String getStepMessage(int index)
+    {
+        return steps != null ? steps[index].message
+                : index < messages.length ? messages[index] : null;
+    }
+
+    private void showStep(IntroLayout introLayout, int index)
+    {
+        PreparedStep prepared = preparedNext != null && preparedNext.index == index ? preparedNext
+                : preparedPrevious != null && preparedPrevious.index == index ? preparedPrevious
+                : null;
+
+        // placement measures the panel, so the content views need the new text
+        // first; drawn content places itself again on a new message instead
+        String message = getStepMessage(index);
+        if (message != null && !introLayout.isCanvasContent())
+            introLayout.setMessage(message);
+
+        if (prepared == null || !introLayout.applyPreparedStep(prepared))
+        {
+            if (steps != null)
+                introLayout.setIntroTargets(steps[index].targets);
+            else
+                introLayout.setIntroTarget(targets[index]);
+        }
+
+        // after the targets, a prepared step brings its own message layout
+        if (message != null && introLayout.isCanvasContent())
+            introLayout.setMessage(message);
+
+        if (progressStore != null)
+            progressStore.markSeen(tourId, index);
+
+        schedulePrefetch();
+    }
+
+    /* prepares the steps around the current one in the background */
+    private void schedulePrefetch()
+    {
+        prefetchGeneration++;
+        preparedNext = null;
+        preparedPrevious = null;
+
+        if (!isPrefetchEnabled || introLayout == null) return;
+
+        if (prefetchRunnable == null)
+        {
+            prefetchRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    prefetch(currentShowIndex + 1, true);
+                    prefetch(currentShowIndex - 1, false);
+                }
+            };
+        }
+
+        introLayout.removeCallbacks(prefetchRunnable);
+        introLayout.postDelayed(prefetchRunnable, PREFETCH_DELAY);
+    }
+
+    private void prefetch(int index, final boolean isNext)
+    {
+        if (index < 0 || index >= getStepCount()) return;
+
+        IntroTarget[] stepTargets = steps != null ? steps[index].targets
+                : new IntroTarget[]{targets[index]};
+
+        final PreparedStep step = introLayout.prepareStep(index, stepTargets, getStepMessage(index));
+        if (step == null) return;
+
+        final int generation = prefetchGeneration;
+        final IntroLayout layout = introLayout;
+
+        getPrefetchExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                step.compute();
+
+                layout.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != prefetchGeneration) return;
+
+                        if (isNext)
+                            preparedNext = step;
+                        else
+                            preparedPrevious = step;
+                    }
+                });
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getPrefetchExecutor()
+    {
+        if (prefetchExecutor == null)
+        {
+            prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "IntroLayout-prefetch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    /* inflates the intro layout if it is not inflated yet */
     public IntroLayout getIntroLayout() {
-        return introLayout;
+        return ensureIntroLayout();
+    }
+
+    public boolean isIntroLayoutInflated() {
+        return introLayout != null;
+    }
+
+    /* time spent inflating the intro layout, -1 while not inflated */
+    public long getInflationTimeNanos() {
+        return inflationTimeNanos;
     }
 
     public IntroTarget[] getTargets() {
@@ -144,6 +548,37 @@ public class IntroController {
         this.messages = messages;
     }
 
+    public IntroStep[] getSteps() {
+        return steps;
+    }
+
+    /* steps take precedence over targets and messages */
+    public void setSteps(IntroStep[] steps) {
+        this.steps = steps;
+    }
+
+    /* steps of a tour compiled at build time, see IntroTour */
+    public void setTour(TourDefinition tour) {
+        this.steps = tour.createSteps();
+    }
+
+    public boolean isPrefetchEnabled() {
+        return isPrefetchEnabled;
+    }
+
+    /*
+     * Prepares the neighbouring steps in the background. Trades allocations on
+     * every step change for less main thread work, worth it with long messages
+     * or complex shapes only. Off by default.
+     */
+    public void setPrefetchEnabled(boolean isPrefetchEnabled) {
+        this.isPrefetchEnabled = isPrefetchEnabled;
+    }
+
+    public String getTourId() {
+        return tourId;
+    }
+
     public OnShowChangeListener getOnShowChangeListener() {
         return onShowChangeListener;
     }
@@ -152,9 +587,30 @@ public class IntroController {
         this.onShowChangeListener = onShowChangeListener;
     }
 
+    public OnLayoutInflatedListener getOnLayoutInflatedListener() {
+        return onLayoutInflatedListener;
+    }
+
+    /*
+     * Configures the intro layout once it is inflated, instead of calling
+     * getIntroLayout() early and inflating it in onCreate. Applies right away
+     * when the layout already exists.
+     */
+    public void setOnLayoutInflatedListener(OnLayoutInflatedListener onLayoutInflatedListener) {
+        this.onLayoutInflatedListener = onLayoutInflatedListener;
+
+        if (introLayout != null && onLayoutInflatedListener != null)
+            onLayoutInflatedListener.onLayoutInflated(introLayout);
+    }
+
     public interface OnShowChangeListener
     {
         public void beforeShowChanged(int showIndex);
         public void afterShowChanged(int showIndex);
     }
+
+    public interface OnLayoutInflatedListener
+    {
+        public void onLayoutInflated(IntroLayout introLayout);
+    }
 }
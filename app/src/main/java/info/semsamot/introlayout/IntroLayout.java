@@ -18,22 +18,29 @@
 
 package info.semsamot.introlayout;
 
-import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Region;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.SystemClock;
+import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.TypedValue;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
@@ -41,50 +48,143 @@ import android.widget.Button;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import java.util.Arrays;
+
+import info.semsamot.introlayout.geom.ArrowGeometry;
+import info.semsamot.introlayout.geom.PlacementSolver;
+
 public class IntroLayout extends RelativeLayout {
 
     private static final String TAG = "info.semsamot.introlayout";
 
     public enum ShapeType {SHAPE_RECTANGLE, SHAPE_CIRCLE, SHAPE_HEXAGON}
     public enum ContentLayoutPosition {TOP, BOTTOM, FLOAT}
+    public enum RenderMode {AUTO, HARDWARE, SOFTWARE}
 
     private static final long DEFAULT_ANIMATION_DURATION = 500;
+    private static final float PULSE_MIN_STROKE_WIDTH = 0.5f;
+    private static final float PULSE_MAX_STROKE_WIDTH = 8;
+    private static final int PULSE_MAX_HIGHLIGHT_ALPHA = 50;
     private static final int DEFAULT_OVERLAY_COLOR = 0xc7000000;
+    private static final long DEFAULT_TARGET_WAIT_TIMEOUT = 1000;
+    private static final long TARGET_WAIT_INTERVAL = 50;
 
     private ViewGroup contentLayout;
     private TextView txtContent;
     private Button btnNext, btnPrevious;
+    private CanvasContent canvasContent;
 
     private ContentLayoutPosition contentLayoutDefaultPosition = ContentLayoutPosition.BOTTOM;
     private ContentLayoutPosition contentLayoutCurrentPosition;
 
     private IntroTarget introTarget;
+    private IntroTarget[] introTargets;
+    private IntroTarget[] singleIntroTarget = new IntroTarget[1];
+
+    private Rect[] targetRects = new Rect[0];
+    private TargetShape[] targetShapes = new TargetShape[0];
+    private int targetCount;
+
+    /* start, 3 arrow control points and 2 head points per target */
+    static final int ARROW_POINTS = 12;
+    private float[] arrowPoints = new float[0];
+
+    /* step transition, from what was on screen to the current targets */
+    private long stepTransitionDuration = 0;
+    private boolean isTransitionPending;
+    private boolean isTransitioning;
+    private long transitionStartNanos = -1;
+    private Rect[] fromRects = new Rect[0];
+    private Rect[] frameRects = new Rect[0];
+    private float[] fromArrowPoints = new float[0];
+    private float[] frameArrowPoints = new float[0];
+    private int fromCount;
 
     private Path targetPath;
     private Rect targetRect;
-    private Path arrowPath;
+    private Path arrowPath = new Path();
+    private Path overlayPath = new Path();
+    private Path targetShapePath = new Path();
+    private Path scratchPath = new Path();
+    private RectF targetPathBounds = new RectF();
+    private Rect pulseDirtyRect = new Rect();
+    /* damage of one frame or step change, flushed as a single invalidate */
+    private Rect batchDirtyRect = new Rect();
+    private boolean isBatchFullyDirty;
+    private int invalidateBatchDepth;
+    private Rect debugDirtyRect = new Rect();
+    private Rect opaqueContentRect = new Rect();
+
+    /* scratch objects, reused so target changes and frames do not allocate */
+    private Rect scratchRect = new Rect();
+    private Rect scratchOpaqueRect = new Rect();
+    private int[] scratchLocation = new int[2];
+    private Matrix shapeMatrix = new Matrix();
+    private ArrowGeometry arrowGeometry = new ArrowGeometry();
+    private PlacementSolver placementSolver = new PlacementSolver();
 
     private Paint mPaint;
-    private Paint targetShapePaint;
-    private Paint targetHighlightPaint;
-    private Paint arrowPathPaint;
+    private Paint overlayPaint;
+    /* copies of the style's paints, animated per frame without touching the shared ones */
+    private Paint targetShapePaint = new Paint();
+    private Paint targetHighlightPaint = new Paint();
+    private Paint arrowPathPaint = new Paint();
     private Paint debugDrawPaint;
 
+    private Bitmap overlayCache;
+    private Canvas overlayCacheCanvas;
+    private boolean isOverlayCacheDirty = true;
+    private ComponentCallbacks2 trimMemoryCallbacks;
+
     private ShapeType targetShapeType;
+    private TargetShape targetShape;
+    private RenderMode renderMode;
 
     private int overlayColor;
-    private int targetHighlightColor;
-    private int targetShapeBorderColor;
-    private int arrowColor;
-    private int arrowStrokeWidth;
+    /* style set on the layout, and the one in use with the current target laid over it */
+    private IntroStyle baseStyle;
+    private IntroStyle style;
 
     private double degrees;
     private float strokeWidth;
     private int highlightAlpha;
     private long animationSpeed;
 
+    private final FrameClock frameClock;
+    private boolean isPulseRequested;
+    private boolean isAttached;
+    private long pulseElapsedNanos;
+    private long pulseLastFrameNanos = -1;
+
     private boolean isArrowCurve = true;
     private boolean isDebugDraw = false;
+    private boolean isDebugDirtyRegions = false;
+    private boolean isOverlayCacheEnabled = false;
+    private boolean isTargetTracking = false;
+    private boolean isPlacementSolverEnabled = false;
+    private IntroMetrics metrics;
+    private boolean isCanvasContent = false;
+    private boolean isNodePulse = false;
+    private float spotlightFeather = 0;
+    private SpotlightMask spotlightMask;
+    private Paint spotlightPaint = new Paint();
+    private Matrix spotlightMatrix = new Matrix();
+    private PulseView highlightNode, borderNode;
+    private View targetRoot;
+    private long targetWaitTimeout = DEFAULT_TARGET_WAIT_TIMEOUT;
+    private long targetWaitStartMillis;
+    private Runnable targetWaitRunnable;
+    private boolean isWaitingForTargets;
+    private boolean isGeometryStale;
+    private boolean isTargetPassThrough = false;
+    private Region hitRegion = new Region();
+    private Region hitClip = new Region();
+    private boolean isHitRegionDirty = true;
+    private View passThroughView;
+    private OnTargetTapListener onTargetTapListener;
+
+    private ViewTreeObserver trackingObserver;
+    private ViewTreeObserver.OnPreDrawListener trackingPreDrawListener;
 
     int
             ptx1, pty1,
@@ -106,280 +206,1378 @@ public class IntroLayout extends RelativeLayout {
 
         this.overlayColor =
                 a.getColor(R.styleable.IntroLayout_overlay_color, DEFAULT_OVERLAY_COLOR);
-        this.targetHighlightColor =
+        int targetHighlightColor =
                 a.getColor(R.styleable.IntroLayout_target_highlight_color, Color.WHITE);
-        this.targetShapeBorderColor =
+        int targetShapeBorderColor =
                 a.getColor(R.styleable.IntroLayout_target_shape_border_color, Color.RED);
         this.targetShapeType = ShapeType.values()[
                 a.getInt(R.styleable.IntroLayout_target_highlight_shape, 0)];
-        this.arrowColor =
+        this.targetShape = TargetShapes.of(targetShapeType);
+        int arrowColor =
                 a.getColor(R.styleable.IntroLayout_arrow_color, Color.YELLOW);
-        this.arrowStrokeWidth =
+        int arrowStrokeWidth =
                 a.getInt(R.styleable.IntroLayout_arrow_stroke_width, 3);
+        this.baseStyle = IntroStyle.of(targetHighlightColor, targetShapeBorderColor,
+                arrowColor, arrowStrokeWidth);
+        applyStyle(baseStyle);
+        this.renderMode = RenderMode.values()[
+                a.getInt(R.styleable.IntroLayout_render_mode, 0)];
+        this.isOverlayCacheEnabled =
+                a.getBoolean(R.styleable.IntroLayout_overlay_cache, false);
+        this.isTargetTracking =
+                a.getBoolean(R.styleable.IntroLayout_target_tracking, false);
+        this.isPlacementSolverEnabled =
+                a.getBoolean(R.styleable.IntroLayout_placement_solver, false);
+        this.isCanvasContent =
+                a.getBoolean(R.styleable.IntroLayout_canvas_content, false);
+        boolean isNodePulse =
+                a.getBoolean(R.styleable.IntroLayout_node_pulse, false);
+        this.isTargetPassThrough =
+                a.getBoolean(R.styleable.IntroLayout_target_pass_through, false);
+        this.spotlightFeather =
+                a.getDimension(R.styleable.IntroLayout_spotlight_feather, 0);
+
+        a.recycle();
+
+        this.frameClock = new FrameClock(new FrameClock.OnFrameListener() {
+            @Override
+            public boolean onFrame(long frameTimeNanos) {
+                return onAnimationFrame(frameTimeNanos);
+            }
+        });
+
+        setNodePulse(isNodePulse);
+    }
+
+    private void initChildren()
+    {
+        this.contentLayout = (ViewGroup) findViewById(R.id.content_layout);
+        this.txtContent = (TextView) findViewById(R.id.txt_content);
+        this.btnNext = (Button) findViewById(R.id.btn_next);
+        this.btnPrevious = (Button) findViewById(R.id.btn_previous);
+
+        if (isCanvasContent)
+            applyCanvasContent();
+    }
+
+    /* content views are hidden and skipped by measure and layout while the panel is drawn */
+    private void applyCanvasContent()
+    {
+        if (isCanvasContent) {
+            if (canvasContent == null)
+                canvasContent = new CanvasContent(getResources().getDisplayMetrics().density,
+                        txtContent, btnNext, btnPrevious);
+            canvasContent.setMessage(txtContent.getText());
+            canvasContent.syncStyle(contentLayout);
+            contentLayout.setVisibility(GONE);
+        } else {
+            contentLayout.setVisibility(VISIBLE);
+            // layout params still hold the last view placement
+            contentLayoutCurrentPosition = null;
+        }
+
+        if (targetRect != null && getWidth() != 0 && getHeight() != 0)
+        {
+            applyContentLayoutAlignment();
+            makeArrowPath();
+        }
+        updateOpaqueContentRect();
+        invalidate();
+    }
+
+    private void layoutCanvasContent()
+    {
+        if (getWidth() == 0 || getHeight() == 0) return;
+
+        canvasContent.layout(getWidth(), getHeight(),
+                contentLayoutCurrentPosition == ContentLayoutPosition.TOP);
+        updateOpaqueContentRect();
+        invalidate();
+    }
+
+    private boolean isFloating()
+    {
+        // the drawn panel only docks to the top or the bottom
+        return contentLayoutDefaultPosition == ContentLayoutPosition.FLOAT && !isCanvasContent;
+    }
+
+    boolean isGfxInitiated;
+    private void initGfx()
+    {
+        if (isGfxInitiated)
+            return;
+
+        Log.d(TAG, "initGfx called.");
+
+        this.mPaint = new Paint();
+        mPaint.setStyle(Paint.Style.FILL);
+
+        this.overlayPaint = new Paint();
+        overlayPaint.setStyle(Paint.Style.FILL);
+        overlayPaint.setColor(overlayColor);
+
+        this.debugDrawPaint = new Paint();
+
+        applyRenderMode();
+
+        isGfxInitiated = true;
+    }
+
+    private RenderMode resolveRenderMode()
+    {
+        if (renderMode != RenderMode.AUTO)
+            return renderMode;
+
+        // even-odd overlay fill draws fine on any canvas where hardware acceleration exists
+        return Build.VERSION.SDK_INT >= 11 ? RenderMode.HARDWARE : RenderMode.SOFTWARE;
+    }
+
+    private void applyRenderMode()
+    {
+        if (Build.VERSION.SDK_INT < 11) return;
+
+        // Region.Op.DIFFERENCE is ignored on LAYER_TYPE_HARDWARE in API 11+,
+        // so only the legacy clip based mode needs a software layer
+        if (resolveRenderMode() == RenderMode.SOFTWARE)
+            this.setLayerType(LAYER_TYPE_SOFTWARE, mPaint);
+        else
+            this.setLayerType(LAYER_TYPE_NONE, null);
+    }
+
+    private void updateOverlayPath()
+    {
+        overlayPath.reset();
+        overlayPath.setFillType(Path.FillType.EVEN_ODD);
+        overlayPath.addRect(0, 0, getWidth(), getHeight(), Path.Direction.CW);
+
+        if (targetPath != null) {
+            overlayPath.addPath(targetPath);
+            targetPathBounds.setEmpty();
+            targetPath.computeBounds(targetPathBounds, false);
+        }
+
+        // one more hole under an opaque content panel, where it overlaps the
+        // target even-odd fills again but the panel covers that part anyway
+        computeOpaqueContentRect(opaqueContentRect);
+        if (!opaqueContentRect.isEmpty())
+            overlayPath.addRect(opaqueContentRect.left, opaqueContentRect.top,
+                    opaqueContentRect.right, opaqueContentRect.bottom, Path.Direction.CW);
+
+        // transition frames keep the mask of the step they move to and only stretch it
+        if (!isTransitioning)
+            updateSpotlightMask();
+
+        isHitRegionDirty = true;
+
+        invalidateOverlayCache();
+        syncPulseNodes();
+    }
+
+    /* soft edged cutouts are limited to single targets, several would multiply the overlay */
+    private void updateSpotlightMask()
+    {
+        Rect rect = targetRects.length > 0 ? targetRects[0] : null;
+
+        spotlightMask = spotlightFeather > 0 && targetPath != null && targetCount == 1
+                && rect.width() > 0 && rect.height() > 0
+                ? SpotlightMask.obtain(shapeOf(0), rect.width(), rect.height(), spotlightFeather)
+                : null;
+    }
+
+    /* pushes target geometry and colors to the pulse nodes, redrawing them once */
+    private void syncPulseNodes()
+    {
+        if (highlightNode == null) return;
+
+        Path path = targetRect != null ? targetPath : null;
+
+        highlightNode.setColor(style.highlightColor, PULSE_MAX_HIGHLIGHT_ALPHA);
+        highlightNode.setGeometry(path);
+
+        borderNode.setColor(style.shapeBorderColor, Color.alpha(style.shapeBorderColor));
+        borderNode.setStrokeWidth(PULSE_MAX_STROKE_WIDTH);
+        borderNode.setGeometry(path);
+    }
+
+    /* pixel aligned bounds of the content panel if nothing below it shows through, empty otherwise */
+    private void computeOpaqueContentRect(Rect out)
+    {
+        out.setEmpty();
+
+        if (isCanvasContent) {
+            if (canvasContent.isOpaque())
+                out.set(canvasContent.panelRect);
+            return;
+        }
+
+        if (contentLayout == null || contentLayout.getVisibility() != VISIBLE
+                || contentLayout.getAlpha() < 1)
+            return;
+
+        Drawable background = contentLayout.getBackground();
+        if (background == null || background.getOpacity() != PixelFormat.OPAQUE)
+            return;
+
+        float x = contentLayout.getX(), y = contentLayout.getY();
+        out.set((int) Math.ceil(x), (int) Math.ceil(y),
+                (int) Math.floor(x + contentLayout.getWidth()),
+                (int) Math.floor(y + contentLayout.getHeight()));
+    }
+
+    /* the panel moved, resized or changed its background since the overlay was built */
+    private void updateOpaqueContentRect()
+    {
+        computeOpaqueContentRect(scratchOpaqueRect);
+        if (!scratchOpaqueRect.equals(opaqueContentRect))
+        {
+            updateOverlayPath();
+            invalidate();
+        }
+    }
+
+    private void invalidateOverlayCache()
+    {
+        isOverlayCacheDirty = true;
+    }
+
+    private void releaseOverlayCache()
+    {
+        // not recycled, a recorded display list may still reference the bitmap
+        overlayCache = null;
+        overlayCacheCanvas = null;
+        isOverlayCacheDirty = true;
+    }
+
+    private void drawOverlayCache(Canvas canvas)
+    {
+        if (overlayCache == null)
+        {
+            try {
+                overlayCache = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "could not allocate overlay cache, drawing directly.");
+                drawStaticLayer(canvas);
+                return;
+            }
+            overlayCacheCanvas = new Canvas(overlayCache);
+            isOverlayCacheDirty = true;
+        }
+
+        if (isOverlayCacheDirty)
+        {
+            overlayCache.eraseColor(Color.TRANSPARENT);
+            drawStaticLayer(overlayCacheCanvas);
+            isOverlayCacheDirty = false;
+        }
+
+        // transparent under the panel, clipping it out saves blending a screen of pixels
+        boolean isClipped = !opaqueContentRect.isEmpty()
+                && (Build.VERSION.SDK_INT >= 18 || !canvas.isHardwareAccelerated());
+        if (isClipped) {
+            canvas.save();
+            canvas.clipRect(opaqueContentRect, Region.Op.DIFFERENCE);
+        }
+
+        canvas.drawBitmap(overlayCache, 0, 0, null);
+        if (metrics != null)
+            metrics.recordOverlayCacheBlit();
+
+        if (isClipped)
+            canvas.restore();
+    }
+
+    /* overlay with target cutout and arrow, these only change with target or size */
+    private void drawStaticLayer(Canvas canvas)
+    {
+        if (metrics != null)
+            metrics.recordOverlayRasterization();
+
+        canvas.save();
+
+        if (spotlightMask != null && targetCount == 1) {
+            if (!opaqueContentRect.isEmpty()
+                    && (Build.VERSION.SDK_INT >= 18 || !canvas.isHardwareAccelerated()))
+                canvas.clipRect(opaqueContentRect, Region.Op.DIFFERENCE);
+
+            spotlightMask.fitTo(isTransitioning ? frameRects[0] : targetRects[0], spotlightMatrix);
+            spotlightMask.shader.setLocalMatrix(spotlightMatrix);
+            spotlightPaint.setShader(spotlightMask.shader);
+            spotlightPaint.setColor(overlayColor);
+            canvas.drawRect(0, 0, getWidth(), getHeight(), spotlightPaint);
+        } else if (resolveRenderMode() == RenderMode.SOFTWARE) {
+            canvas.clipPath(targetPath, Region.Op.DIFFERENCE);
+            if (!opaqueContentRect.isEmpty())
+                canvas.clipRect(opaqueContentRect, Region.Op.DIFFERENCE);
+            canvas.drawColor(overlayColor);
+        } else {
+            // the target path is a hole of the even-odd overlay path
+            canvas.drawPath(overlayPath, overlayPaint);
+        }
+
+        canvas.drawPath(arrowPath, arrowPathPaint);
+
+        canvas.restore();
+    }
+
+    /* one arrow per target, points go to arrowPoints and the path to arrowPath */
+    private void makeArrowPath()
+    {
+        long start = metrics != null ? System.nanoTime() : 0;
+        boolean isContentAtTop = contentLayoutCurrentPosition == ContentLayoutPosition.TOP;
+        int horizontalMargin = (int) getInPixel(20);
+        int headSize = (int) getInPixel(15);
+
+        for (int i = targetCount - 1; i >= 0; i--)
+        {
+            Rect rect = targetRects[i];
+
+            ArrowGeometry g = arrowGeometry;
+            g.compute(getWidth(), getHeight(),
+                    rect.left, rect.top, rect.right, rect.bottom,
+                    isContentAtTop, isArrowCurve, horizontalMargin, headSize);
+
+            // control points of the first target are kept for debug drawing
+            ptx1 = g.ptx1; pty1 = g.pty1;
+            ptx2 = g.ptx2; pty2 = g.pty2;
+            ptx3 = g.ptx3; pty3 = g.pty3;
+            degrees = g.degrees;
+
+            writeArrowPoints(g, arrowPoints, i * ARROW_POINTS);
+        }
+
+        buildArrowPath(arrowPoints, targetCount);
+
+        if (metrics != null)
+            metrics.recordSection(IntroMetrics.SECTION_ARROW_PATH, System.nanoTime() - start);
+    }
+
+    static void writeArrowPoints(ArrowGeometry g, float[] pts, int o)
+    {
+        pts[o] = g.startX;      pts[o + 1] = g.startY;
+        pts[o + 2] = g.ptx1;    pts[o + 3] = g.pty1;
+        pts[o + 4] = g.ptx2;    pts[o + 5] = g.pty2;
+        pts[o + 6] = g.ptx3;    pts[o + 7] = g.pty3;
+        pts[o + 8] = g.head1X;  pts[o + 9] = g.head1Y;
+        pts[o + 10] = g.head2X; pts[o + 11] = g.head2Y;
+    }
+
+    private void buildArrowPath(float[] pts, int count)
+    {
+        Path arrow = arrowPath;
+        arrow.reset();
+
+        for (int o = 0; o < count * ARROW_POINTS; o += ARROW_POINTS)
+        {
+            /* drawing arrow line */
+
+            arrow.moveTo(pts[o], pts[o + 1]);
+
+            if (isArrowCurve)
+            {
+                // Bezier Curve
+                arrow.cubicTo(
+                        pts[o + 2], pts[o + 3],
+                        pts[o + 4], pts[o + 5],
+                        pts[o + 6], pts[o + 7]);
+            } else {
+                // Straight Line
+                arrow.lineTo(pts[o + 4], pts[o + 7]);
+                arrow.lineTo(pts[o + 6], pts[o + 7]);
+            }
+
+            /* drawing arrow head */
+
+            arrow.moveTo(pts[o + 6], pts[o + 7]);
+            arrow.lineTo(pts[o + 8], pts[o + 9]);
+            arrow.moveTo(pts[o + 6], pts[o + 7]);
+            arrow.lineTo(pts[o + 10], pts[o + 11]);
+
+            /* --- --- --- */
+        }
+    }
+
+    private void debugDraw(Canvas canvas, int dx, double degrees)
+    {
+        int mCenterX = getWidth() / 2;
+        int mCenterY = getHeight() / 2;
+
+        debugDrawPaint.setStrokeWidth(8 - strokeWidth);
+
+        debugDrawPaint.setStyle(Paint.Style.STROKE);
+        debugDrawPaint.setColor(Color.GREEN);
+        canvas.drawPoint(mCenterX, mCenterY, debugDrawPaint);
+
+        debugDrawPaint.setColor(Color.BLUE);
+        canvas.drawLine(
+                mCenterX, mCenterY,
+                (float) (mCenterX + dx * Math.cos(Math.toRadians(degrees))),
+                (float) (mCenterY + dx * Math.sin(Math.toRadians(degrees))),
+                debugDrawPaint);
+
+        canvas.drawCircle(mCenterX, mCenterY, Math.abs(dx) + 10, debugDrawPaint);
+
+        debugDrawPaint.setStrokeWidth(strokeWidth * 1.5f);
+        debugDrawPaint.setColor(Color.RED);
+        canvas.drawPoint(ptx1, pty1, debugDrawPaint);
+        canvas.drawPoint(ptx2, pty2, debugDrawPaint);
+        canvas.drawPoint(ptx3, pty3, debugDrawPaint);
+
+        debugDrawPaint.setStyle(Paint.Style.FILL);
+        debugDrawPaint.setTextSize(30);
+        canvas.drawText(String.valueOf(degrees), mCenterX - 100, mCenterY + 120, debugDrawPaint);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        long drawStart = metrics != null ? System.nanoTime() : 0;
+
+        if (targetRect != null && mPaint != null)
+        {
+            // pulse nodes draw these themselves
+            if (highlightNode == null)
+            {
+                Rect[] rects = isTransitioning ? frameRects : targetRects;
+
+                targetHighlightPaint.setAlpha(highlightAlpha);
+                for (int i = 0; i < targetCount; i++)
+                    canvas.drawRect(rects[i], targetHighlightPaint);
+
+                targetShapePaint.setStrokeWidth(strokeWidth);
+                canvas.drawPath(targetPath, targetShapePaint);
+            }
+
+            // the cache would be rebuilt on every frame of a transition
+            if (isOverlayCacheEnabled && !isTransitioning && getWidth() > 0 && getHeight() > 0)
+                drawOverlayCache(canvas);
+            else
+                drawStaticLayer(canvas);
+
+            if (isCanvasContent)
+                canvasContent.draw(canvas);
+
+            if (isDebugDraw)
+                debugDraw(canvas, 30, degrees);
+
+            if (isDebugDirtyRegions && !debugDirtyRect.isEmpty())
+            {
+                debugDrawPaint.setStyle(Paint.Style.STROKE);
+                debugDrawPaint.setStrokeWidth(2);
+                debugDrawPaint.setColor(Color.MAGENTA);
+                canvas.drawRect(
+                        debugDirtyRect.left + 1, debugDirtyRect.top + 1,
+                        debugDirtyRect.right - 1, debugDirtyRect.bottom - 1,
+                        debugDrawPaint);
+            }
+        }
+
+        if (metrics != null)
+            metrics.recordDraw(System.nanoTime() - drawStart);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        initChildren();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        placementSolver.invalidate();
+        releaseOverlayCache();
+        updateOverlayPath();
+
+        if (isCanvasContent)
+            layoutCanvasContent();
+
+        // targets move with the window, their new bounds are known once laid out
+        isGeometryStale = true;
+    }
+
+    @Override
+    public void invalidate() {
+        if (invalidateBatchDepth > 0) {
+            isBatchFullyDirty = true;
+            return;
+        }
+
+        super.invalidate();
+        if (metrics != null)
+            metrics.recordInvalidate(true);
+    }
+
+    @Override
+    public void invalidate(Rect dirty) {
+        invalidate(dirty.left, dirty.top, dirty.right, dirty.bottom);
+    }
+
+    @Override
+    public void invalidate(int l, int t, int r, int b) {
+        if (invalidateBatchDepth > 0) {
+            batchDirtyRect.union(l, t, r, b);
+            return;
+        }
+
+        super.invalidate(l, t, r, b);
+        if (metrics != null)
+            metrics.recordInvalidate(isFullArea(l, t, r, b));
+    }
+
+    /* invalidates until the matching end are merged into one */
+    private void beginInvalidateBatch()
+    {
+        if (invalidateBatchDepth++ > 0) return;
+
+        isBatchFullyDirty = false;
+        batchDirtyRect.setEmpty();
+    }
+
+    private void endInvalidateBatch()
+    {
+        if (--invalidateBatchDepth > 0) return;
+
+        if (isBatchFullyDirty)
+            invalidate();
+        else if (!batchDirtyRect.isEmpty())
+            invalidate(batchDirtyRect.left, batchDirtyRect.top,
+                    batchDirtyRect.right, batchDirtyRect.bottom);
+    }
+
+    /*
+     * Visible rect of a view in the coordinates this layout draws and takes
+     * touches in, which only match the window's while it sits at its origin.
+     */
+    private void mapVisibleRect(View view, Rect out)
+    {
+        view.getGlobalVisibleRect(out);
+        getLocationInWindow(scratchLocation);
+        out.offset(-scratchLocation[0], -scratchLocation[1]);
+    }
+
+    private boolean isFullArea(int l, int t, int r, int b)
+    {
+        return l <= 0 && t <= 0 && r >= getWidth() && b >= getHeight();
+    }
+
+    /*
+     * In pass-through mode a gesture starting in the cutout goes to the target
+     * view under it, the rest of the screen stays blocked. Taps are reported
+     * to the OnTargetTapListener after the gesture reached the target.
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        if (!isTargetPassThrough)
+            return super.dispatchTouchEvent(event);
+
+        int action = event.getActionMasked();
+        float x = event.getX(), y = event.getY();
+
+        if (action == MotionEvent.ACTION_DOWN)
+            passThroughView = isInCutout(x, y) && !isOverContent(x, y) ? targetViewAt(x, y) : null;
+
+        if (passThroughView == null)
+            return super.dispatchTouchEvent(event);
+
+        View target = passThroughView;
+        target.getLocationInWindow(scratchLocation);
+        float offsetX = scratchLocation[0], offsetY = scratchLocation[1];
+        getLocationInWindow(scratchLocation);
+        offsetX -= scratchLocation[0];
+        offsetY -= scratchLocation[1];
+
+        event.offsetLocation(-offsetX, -offsetY);
+        target.dispatchTouchEvent(event);
+        event.offsetLocation(offsetX, offsetY);
+
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)
+        {
+            passThroughView = null;
+            if (action == MotionEvent.ACTION_UP && onTargetTapListener != null && isInCutout(x, y))
+                onTargetTapListener.onTargetTap(this, target);
+        }
+        return true;
+    }
+
+    /* the region is built from the target path once per target change, lookups are cheap */
+    private boolean isInCutout(float x, float y)
+    {
+        if (targetPath == null || targetCount == 0 || isTransitioning
+                || !targetPathBounds.contains(x, y))
+            return false;
+
+        if (isHitRegionDirty)
+        {
+            hitClip.set(0, 0, getWidth(), getHeight());
+            hitRegion.setPath(targetPath, hitClip);
+            isHitRegionDirty = false;
+        }
+        return hitRegion.contains((int) x, (int) y);
+    }
+
+    private boolean isOverContent(float x, float y)
+    {
+        if (isCanvasContent)
+            return canvasContent.panelRect.contains((int) x, (int) y);
+
+        if (contentLayout == null || contentLayout.getVisibility() != VISIBLE)
+            return false;
+
+        contentLayout.getHitRect(scratchRect);
+        return scratchRect.contains((int) x, (int) y);
+    }
+
+    private View targetViewAt(float x, float y)
+    {
+        if (introTargets == null) return null;
+
+        int index = 0;
+        for (IntroTarget target : introTargets)
+        {
+            if (!target.hasReference()) continue;
+            View targetView = resolveTarget(target);
+            if (targetView == null || !targetView.isShown()) continue;
+
+            if (index < targetCount && targetRects[index].contains((int) x, (int) y))
+                return targetView;
+            index++;
+        }
+        return null;
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (isCanvasContent && canvasContent.onTouchEvent(event))
+        {
+            invalidate(canvasContent.panelRect);
+            return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        isAttached = true;
+        updateAnimationState();
+
+        if (isTargetTracking)
+            startTargetTracking();
+
+        if (Build.VERSION.SDK_INT >= 14 && trimMemoryCallbacks == null)
+        {
+            trimMemoryCallbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                        releaseOverlayCache();
+                        SpotlightMask.clear();
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {}
+
+                @Override
+                public void onLowMemory() {
+                    releaseOverlayCache();
+                    SpotlightMask.clear();
+                }
+            };
+            getContext().getApplicationContext().registerComponentCallbacks(trimMemoryCallbacks);
+        }
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+
+        isAttached = false;
+        updateAnimationState();
+        stopTargetTracking();
+
+        if (targetWaitRunnable != null)
+            removeCallbacks(targetWaitRunnable);
+
+        if (trimMemoryCallbacks != null)
+        {
+            getContext().getApplicationContext().unregisterComponentCallbacks(trimMemoryCallbacks);
+            trimMemoryCallbacks = null;
+        }
+
+        releaseOverlayCache();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        // goes invisible when the hosting activity is stopped
+        super.onWindowVisibilityChanged(visibility);
+        updateAnimationState();
+    }
+
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        updateAnimationState();
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        super.onLayout(changed, l, t, r, b);
+        initGfx();
+
+        // the intro sits on top of the window and is laid out after its targets
+        if (isGeometryStale || isWaitingForTargets)
+        {
+            isGeometryStale = false;
+            refreshTargetGeometry();
+        }
+
+        updateOpaqueContentRect();
+    }
+
+    /* reads the targets again and recomputes everything that depends on them or the size */
+    private void refreshTargetGeometry()
+    {
+        if (introTargets != null) {
+            if (targetWaitRunnable != null)
+                removeCallbacks(targetWaitRunnable);
+            setTargetViews(introTargets);
+        } else if (targetRect != null && targetCount > 0) {
+            applyTargetRects();
+        }
+    }
+
+    public void animateTargetRect()
+    {
+        animateTargetRect(DEFAULT_ANIMATION_DURATION);
+    }
+
+    public void animateTargetRect(long repeatDuration)
+    {
+        this.animationSpeed = repeatDuration;
+        this.isPulseRequested = true;
+        updateAnimationState();
+    }
+
+    public void stopAnimation()
+    {
+        this.isPulseRequested = false;
+        updateAnimationState();
+    }
+
+    public boolean isAnimating() {
+        return frameClock.isRunning();
+    }
+
+    /* runs the frame clock only while somebody can actually see the frames */
+    private void updateAnimationState()
+    {
+        boolean canRun = canAnimate();
+
+        // nobody would see the rest of the transition
+        if (isTransitioning && !canRun)
+            finishStepTransition();
+
+        if (canRun && (isPulseOnFrameClock() || isTransitioning)) {
+            frameClock.start();
+        } else {
+            frameClock.stop();
+            pulseLastFrameNanos = -1;
+            if (metrics != null)
+                metrics.pauseFrames();
+        }
+
+        if (highlightNode != null)
+        {
+            if (canRun && isPulseRequested) {
+                highlightNode.startPulse(animationSpeed);
+                borderNode.startPulse(animationSpeed);
+            } else {
+                highlightNode.stopPulse();
+                borderNode.stopPulse();
+            }
+        }
+    }
+
+    private boolean isPulseOnFrameClock()
+    {
+        return isPulseRequested && highlightNode == null;
+    }
+
+    /* package-private so the render harness can stand in for a focused window */
+    boolean canAnimate()
+    {
+        return isAttached
+                && getVisibility() == VISIBLE
+                && getWindowVisibility() == VISIBLE
+                && hasWindowFocus();
+    }
+
+    boolean onAnimationFrame(long frameTimeNanos)
+    {
+        if (metrics != null)
+            metrics.recordFrame(frameTimeNanos);
+
+        beginInvalidateBatch();
+
+        if (isTransitioning)
+            onTransitionFrame(frameTimeNanos);
+
+        if (isPulseOnFrameClock())
+            onPulseFrame(frameTimeNanos);
+
+        endInvalidateBatch();
+
+        return isPulseOnFrameClock() || isTransitioning;
+    }
+
+    private void onTransitionFrame(long frameTimeNanos)
+    {
+        if (transitionStartNanos == -1)
+            transitionStartNanos = frameTimeNanos;
+
+        float fraction = (frameTimeNanos - transitionStartNanos)
+                / (stepTransitionDuration * 1000000f);
+
+        if (fraction >= 1) {
+            finishStepTransition();
+        } else {
+            fraction = (float) (Math.cos((fraction + 1) * Math.PI) / 2) + 0.5f;
+            applyStepTransitionFrame(fraction);
+        }
+
+        // the cutout moves, so the whole overlay changes
+        invalidate();
+    }
+
+    private void onPulseFrame(long frameTimeNanos)
+    {
+
+        // resuming after a pause continues from the same phase
+        if (pulseLastFrameNanos != -1)
+            pulseElapsedNanos += frameTimeNanos - pulseLastFrameNanos;
+        pulseLastFrameNanos = frameTimeNanos;
+
+        long durationNanos = Math.max(animationSpeed, 1) * 1000000L;
+        float phase = (float) (pulseElapsedNanos % (2 * durationNanos)) / durationNanos;
+        if (phase > 1)
+            phase = 2 - phase;  // reverse repeat
+
+        // same curve as the default ValueAnimator interpolator
+        float fraction = (float) (Math.cos((phase + 1) * Math.PI) / 2) + 0.5f;
+
+        float newStrokeWidth = PULSE_MIN_STROKE_WIDTH
+                + (PULSE_MAX_STROKE_WIDTH - PULSE_MIN_STROKE_WIDTH) * fraction;
+        int newHighlightAlpha = (int) (PULSE_MAX_HIGHLIGHT_ALPHA * fraction);
+
+        pulseDirtyRect.setEmpty();
+
+        if (targetRect != null && targetPath != null)
+        {
+            // border stroke straddles the target path, wider of old and new width wins
+            if (newStrokeWidth != strokeWidth)
+            {
+                int inset = (int) Math.ceil(Math.max(newStrokeWidth, strokeWidth) / 2) + 1;
+                pulseDirtyRect.union(
+                        (int) Math.floor(targetPathBounds.left) - inset,
+                        (int) Math.floor(targetPathBounds.top) - inset,
+                        (int) Math.ceil(targetPathBounds.right) + inset,
+                        (int) Math.ceil(targetPathBounds.bottom) + inset);
+            }
+
+            if (newHighlightAlpha != highlightAlpha)
+                pulseDirtyRect.union(targetRect);
+        }
+
+        this.strokeWidth = newStrokeWidth;
+        this.highlightAlpha = newHighlightAlpha;
+
+        if (isDebugDraw || isTransitioning) {
+            invalidate();
+        } else if (!pulseDirtyRect.isEmpty()) {
+            invalidate(pulseDirtyRect.left, pulseDirtyRect.top,
+                    pulseDirtyRect.right, pulseDirtyRect.bottom);
+            debugDirtyRect.set(pulseDirtyRect);
+        }
+    }
+
+    /* snapshot of what is on screen now, the next applyTargetRects morphs from it */
+    private void beginStepTransition()
+    {
+        if (stepTransitionDuration <= 0 || targetRect == null || targetCount == 0
+                || isFloating())
+            return;
+
+        Rect[] rects = isTransitioning ? frameRects : targetRects;
+        float[] pts = isTransitioning ? frameArrowPoints : arrowPoints;
+
+        for (int i = 0; i < targetCount; i++)
+            fromRects[i].set(rects[i]);
+        System.arraycopy(pts, 0, fromArrowPoints, 0, targetCount * ARROW_POINTS);
+
+        fromCount = targetCount;
+        isTransitionPending = true;
+    }
+
+    private void startStepTransition()
+    {
+        isTransitionPending = false;
+
+        if (fromCount != targetCount || !canAnimate())
+        {
+            finishStepTransition();
+            return;
+        }
+
+        isTransitioning = true;
+        transitionStartNanos = -1;
+        applyStepTransitionFrame(0);
+        updateAnimationState();
+    }
+
+    private void applyStepTransitionFrame(float fraction)
+    {
+        for (int i = 0; i < targetCount; i++)
+        {
+            Rect from = fromRects[i];
+            Rect to = targetRects[i];
+            frameRects[i].set(
+                    from.left + Math.round((to.left - from.left) * fraction),
+                    from.top + Math.round((to.top - from.top) * fraction),
+                    from.right + Math.round((to.right - from.right) * fraction),
+                    from.bottom + Math.round((to.bottom - from.bottom) * fraction));
+        }
+
+        for (int i = 0; i < targetCount * ARROW_POINTS; i++)
+            frameArrowPoints[i] = fromArrowPoints[i] + (arrowPoints[i] - fromArrowPoints[i]) * fraction;
+
+        buildTargetPath(frameRects, targetCount);
+        buildArrowPath(frameArrowPoints, targetCount);
+        updateOverlayPath();
+    }
+
+    private void finishStepTransition()
+    {
+        isTransitionPending = false;
+
+        if (!isTransitioning) return;
+        isTransitioning = false;
+
+        setTargetPath();
+        buildArrowPath(arrowPoints, targetCount);
+        invalidateOverlayCache();
+        invalidate();
+    }
+
+    public void disableContentLayoutBackground() {
+        contentLayout.setBackgroundColor(0x00000000);
+        txtContent.setTextColor(Color.WHITE);
+
+        if (isCanvasContent) {
+            canvasContent.syncStyle(contentLayout);
+            layoutCanvasContent();
+        }
+
+        // the overlay has to cover the panel area again
+        updateOpaqueContentRect();
+    }
+
+    public boolean isTargetPassThrough() {
+        return isTargetPassThrough;
+    }
+
+    /* lets touches in the cutout reach the highlighted view */
+    public void setTargetPassThrough(boolean isTargetPassThrough) {
+        this.isTargetPassThrough = isTargetPassThrough;
+        this.passThroughView = null;
+    }
+
+    public OnTargetTapListener getOnTargetTapListener() {
+        return onTargetTapListener;
+    }
 
-        a.recycle();
+    public void setOnTargetTapListener(OnTargetTapListener onTargetTapListener) {
+        this.onTargetTapListener = onTargetTapListener;
     }
 
-    private void initChildren()
+    public interface OnTargetTapListener
     {
-        this.contentLayout = (ViewGroup) findViewById(R.id.content_layout);
-        this.txtContent = (TextView) findViewById(R.id.txt_content);
-        this.btnNext = (Button) findViewById(R.id.btn_next);
-        this.btnPrevious = (Button) findViewById(R.id.btn_previous);
+        /* a tap in the cutout in pass-through mode, after the target got it */
+        public void onTargetTap(IntroLayout introLayout, View target);
     }
 
-    boolean isGfxInitiated;
-    private void initGfx()
-    {
-        if (isGfxInitiated)
-            return;
+    public float getSpotlightFeather() {
+        return spotlightFeather;
+    }
 
-        Log.d(TAG, "initGfx called.");
+    /* width in pixels of a soft edge around a single target, 0 for a hard edge */
+    public void setSpotlightFeather(float spotlightFeather) {
+        this.spotlightFeather = spotlightFeather;
+        updateSpotlightMask();
+        invalidateOverlayCache();
+        invalidate();
+    }
 
-        this.mPaint = new Paint();
-        mPaint.setStyle(Paint.Style.FILL);
+    public boolean isNodePulse() {
+        return isNodePulse;
+    }
+
+    /*
+     * Moves highlight and border into child views pulsed by alpha animations,
+     * so a pulse frame no longer runs onDraw of this layout. The border then
+     * fades instead of thickening. Needs API 18 for the path clip.
+     */
+    public void setNodePulse(boolean isNodePulse) {
+        this.isNodePulse = isNodePulse && Build.VERSION.SDK_INT >= 18;
+
+        if (this.isNodePulse && highlightNode == null) {
+            // below the content views, above what onDraw paints, so clipped to the cutout
+            highlightNode = new PulseView(getContext(), PulseView.HIGHLIGHT);
+            borderNode = new PulseView(getContext(), PulseView.BORDER);
+            addView(highlightNode, 0, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            addView(borderNode, 1, new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            syncPulseNodes();
+        } else if (!this.isNodePulse && highlightNode != null) {
+            highlightNode.stopPulse();
+            borderNode.stopPulse();
+            removeView(highlightNode);
+            removeView(borderNode);
+            highlightNode = null;
+            borderNode = null;
+        }
 
-        this.targetShapePaint = new Paint();
-        targetShapePaint.setAntiAlias(true);
-        targetShapePaint.setStyle(Paint.Style.STROKE);
-        targetShapePaint.setStrokeWidth(4);
-        targetShapePaint.setColor(targetShapeBorderColor);
+        updateAnimationState();
+        invalidate();
+    }
 
-        this.targetHighlightPaint = new Paint();
-        targetHighlightPaint.setStyle(Paint.Style.FILL);
-        targetHighlightPaint.setColor(targetHighlightColor);
-        targetHighlightPaint.setAlpha(highlightAlpha);
+    public long getTargetWaitTimeout() {
+        return targetWaitTimeout;
+    }
 
-        this.arrowPathPaint = new Paint();
-        arrowPathPaint.setAntiAlias(true);
-        arrowPathPaint.setStyle(Paint.Style.STROKE);
-        arrowPathPaint.setStrokeWidth(arrowStrokeWidth);
-        arrowPathPaint.setColor(arrowColor);
+    /* how long a step waits for targets that are not resolved or laid out yet */
+    public void setTargetWaitTimeout(long targetWaitTimeout) {
+        this.targetWaitTimeout = targetWaitTimeout;
+    }
 
-        this.debugDrawPaint = new Paint();
+    public boolean isCanvasContent() {
+        return isCanvasContent;
+    }
 
-        if (this.targetRect != null)
+    /*
+     * Draws the message and buttons instead of laying out the content views,
+     * a step change is then a single draw. FLOAT placement is not available.
+     */
+    public void setCanvasContent(boolean isCanvasContent) {
+        this.isCanvasContent = isCanvasContent;
+        if (contentLayout != null)
+            applyCanvasContent();
+    }
+
+    public void setMessage(CharSequence message) {
+        if (!isCanvasContent) {
+            txtContent.setText(message);
+            return;
+        }
+
+        // the hidden TextView is left alone, setText would request a layout
+        if (canvasContent.setMessage(message) && targetRect != null)
         {
             applyContentLayoutAlignment();
-            this.arrowPath = makeArrowPath();
+            makeArrowPath();
+            invalidateOverlayCache();
+            invalidate();
         }
+    }
+
+    public IntroTarget getIntroTarget() {
+        return introTarget;
+    }
+
+    public void setIntroTarget(IntroTarget introTarget) {
+        singleIntroTarget[0] = introTarget;
+        setIntroTargets(singleIntroTarget);
+    }
 
+    public IntroTarget[] getIntroTargets() {
+        return introTargets;
+    }
 
-        // setting layer type to software
-        // because of Region.Op.DIFFERENCE is ignored on LAYER_TYPE_HARDWARE in API 11+
-        if (Build.VERSION.SDK_INT >= 11)
-            this.setLayerType(LAYER_TYPE_SOFTWARE, mPaint);
+    /* highlights all targets at once, colors are taken from the first one */
+    public void setIntroTargets(IntroTarget[] introTargets) {
+        beginInvalidateBatch();
+        beginStepTransition();
 
-        isGfxInitiated = true;
+        this.introTargets = introTargets;
+        this.introTarget = introTargets[0];
+        applyTargetStyle(introTarget);
+
+        targetWaitStartMillis = SystemClock.uptimeMillis();
+        if (targetWaitRunnable != null)
+            removeCallbacks(targetWaitRunnable);
+        setTargetViews(introTargets);
+        endInvalidateBatch();
     }
 
-    private Path makeArrowPath()
+    /* window the targets given by id or resolver are looked up in */
+    View getTargetRoot()
     {
-        Path arrow = new Path();
+        return targetRoot != null ? targetRoot : getRootView();
+    }
+
+    void setTargetRoot(View targetRoot) {
+        this.targetRoot = targetRoot;
+    }
 
-        int mContentLayoutEdge = contentLayoutCurrentPosition == ContentLayoutPosition.TOP ? 0 : getHeight();
-        int mRight = getWidth();
-        int mCenterX = mRight / 2;
-        int mCenterY = mContentLayoutEdge / 2;
+    private View resolveTarget(IntroTarget target)
+    {
+        return target.resolve(getTargetRoot());
+    }
 
-        /* drawing arrow line */
+    private void applyTargetStyle(IntroTarget introTarget)
+    {
+        applyStyle(baseStyle.overriddenBy(introTarget));
 
-        ptx1 = mCenterX;
-        pty1 = mContentLayoutEdge;
+        if (introTarget.shape != null)
+            setTargetShape(introTarget.shape);
+        else if (introTarget.shapeType != null)
+            setTargetShapeType(introTarget.shapeType);
+    }
 
-        int leftGap = targetRect.left;
-        int rightGap = mRight - targetRect.right;
+    /* copies the paints of an interned style into this layout's own, nothing is allocated */
+    private void applyStyle(IntroStyle style)
+    {
+        if (style == this.style) return;
 
-        int horizontalMargin = (int) getInPixel(20);
+        this.style = style;
+        targetHighlightPaint.set(style.highlightPaint);
+        targetShapePaint.set(style.shapePaint);
+        arrowPathPaint.set(style.arrowPaint);
 
-        if (leftGap > rightGap)
+        if (isGfxInitiated)
         {
-            ptx2 = leftGap / 2;
-            ptx3 = targetRect.left - horizontalMargin;
-        } else {
-            ptx2 = targetRect.right + (rightGap / 2);
-            ptx3 = targetRect.right + horizontalMargin;
+            invalidateOverlayCache();
+            syncPulseNodes();
+            invalidate();
         }
+    }
 
-        int targetRectBottom = contentLayoutCurrentPosition == ContentLayoutPosition.TOP ?
-                targetRect.bottom : -targetRect.bottom;
-        pty2 = (mContentLayoutEdge + targetRectBottom) / 2;
-        pty3 = targetRect.top + (targetRect.height()/2);
-
+    private void setBaseStyle(IntroStyle baseStyle)
+    {
+        this.baseStyle = baseStyle;
+        applyStyle(introTarget != null ? baseStyle.overriddenBy(introTarget) : baseStyle);
+    }
 
-        if (isArrowCurve)
-        {
-            // Bezier Curve
-            arrow.moveTo(mCenterX, mContentLayoutEdge);
-            arrow.cubicTo(
-                    ptx1, pty1,
-                    ptx2, pty2,
-                    ptx3, pty3);
-        } else {
-            // Straight Line
-            arrow.moveTo(ptx2, mContentLayoutEdge);
-            arrow.lineTo(ptx2, pty3);
-            arrow.lineTo(ptx3, pty3);
-        }
+    /*
+     * Main thread part of preparing a step ahead of time, cheap snapshots only.
+     * @return null when the step cannot be prepared yet
+     */
+    PreparedStep prepareStep(int index, IntroTarget[] introTargets, CharSequence message)
+    {
+        if (getWidth() == 0 || getHeight() == 0
+                || isFloating())
+            return null;
 
-        /* --- --- --- */
+        IntroTarget first = introTargets[0];
+        TargetShape defaultShape = first.shape != null ? first.shape
+                : first.shapeType != null ? TargetShapes.of(first.shapeType) : targetShape;
 
-        /* drawing arrow head */
-        //                                                -->              <--
-        int dx = (int) ((leftGap > rightGap) ? getInPixel(-15) : getInPixel(15));
-        int dy = (int) getInPixel(15);
+        PreparedStep step = new PreparedStep(index, introTargets, message);
+        step.viewWidth = getWidth();
+        step.viewHeight = getHeight();
+        step.rects = new Rect[introTargets.length];
+        step.shapes = new TargetShape[introTargets.length];
 
-        if (isArrowCurve)
+        for (IntroTarget target : introTargets)
         {
-            int distX = Math.abs(ptx3 - ptx2);
-            int distY = /*Math.abs*/(pty2 - pty3);
-            double angle = Math.atan2(distY, distX);
-            degrees = angle * (180 / Math.PI);
-        } else {
-            degrees = 0;
+            if (!target.hasReference()) continue;
+            View targetView = resolveTarget(target);
+            if (targetView == null || !targetView.isShown()) return null;
+
+            Rect rect = new Rect();
+            mapVisibleRect(targetView, rect);
+            step.rects[step.count] = rect;
+            step.shapes[step.count] = target.shape != null ? target.shape
+                    : target.shapeType != null ? TargetShapes.of(target.shapeType) : defaultShape;
+            step.count++;
         }
 
-        double offsetAng1 = (leftGap > rightGap) ? 22.5 : -22.5;
-        double offsetAng2 = (leftGap > rightGap) ? -22.5 : 22.5;
+        if (step.count == 0) return null;
 
-        arrow.moveTo(ptx3, pty3);
-        arrow.lineTo(
-                (float) (ptx3 + dx * Math.cos(Math.toRadians(degrees + offsetAng1))),
-                (float) (pty3 + dy * Math.sin(Math.toRadians(degrees + offsetAng1)))
-        );
-        arrow.moveTo(ptx3, pty3);
-        arrow.lineTo(
-                (float) (ptx3 + dx * Math.cos(Math.toRadians(degrees + offsetAng2))),
-                (float) (pty3 + dy * Math.sin(Math.toRadians(degrees + offsetAng2)))
-        );
+        step.isArrowCurve = isArrowCurve;
+        step.horizontalMargin = (int) getInPixel(20);
+        step.headSize = (int) getInPixel(15);
 
-        /* --- --- --- */
+        if (isCanvasContent) {
+            step.textPaint = new TextPaint(canvasContent.getTextPaint());
+            step.textWidth = canvasContent.getTextWidth(getWidth());
+            step.lineSpacingMultiplier = canvasContent.getLineSpacingMultiplier();
+        } else {
+            step.textPaint = new TextPaint(txtContent.getPaint());
+            step.textWidth = txtContent.getWidth()
+                    - txtContent.getCompoundPaddingLeft() - txtContent.getCompoundPaddingRight();
+            step.lineSpacingMultiplier = Build.VERSION.SDK_INT >= 16
+                    ? txtContent.getLineSpacingMultiplier() : 1.2f;
+        }
 
-        return arrow;
+        return step;
     }
 
-    private void debugDraw(Canvas canvas, int dx, double degrees)
+    /*
+     * Swaps in a step computed by PreparedStep.compute().
+     * @return false when it went stale, the step has to be set the normal way
+     */
+    boolean applyPreparedStep(PreparedStep step)
     {
-        int mCenterX = getWidth() / 2;
-        int mCenterY = getHeight() / 2;
-
-        debugDrawPaint.setStrokeWidth(8 - strokeWidth);
-
-        debugDrawPaint.setStyle(Paint.Style.STROKE);
-        debugDrawPaint.setColor(Color.GREEN);
-        canvas.drawPoint(mCenterX, mCenterY, debugDrawPaint);
-
-        debugDrawPaint.setColor(Color.BLUE);
-        canvas.drawLine(
-                mCenterX, mCenterY,
-                (float) (mCenterX + dx * Math.cos(Math.toRadians(degrees))),
-                (float) (mCenterY + dx * Math.sin(Math.toRadians(degrees))),
-                debugDrawPaint);
+        if (!step.isComputed || step.viewWidth != getWidth() || step.viewHeight != getHeight()
+                || isFloating())
+            return false;
 
-        canvas.drawCircle(mCenterX, mCenterY, Math.abs(dx) + 10, debugDrawPaint);
+        int index = 0;
+        for (IntroTarget target : step.targets)
+        {
+            if (!target.hasReference()) continue;
+            View targetView = resolveTarget(target);
+            if (index >= step.count || targetView == null || !targetView.isShown()) return false;
 
-        debugDrawPaint.setStrokeWidth(strokeWidth * 1.5f);
-        debugDrawPaint.setColor(Color.RED);
-        canvas.drawPoint(ptx1, pty1, debugDrawPaint);
-        canvas.drawPoint(ptx2, pty2, debugDrawPaint);
-        canvas.drawPoint(ptx3, pty3, debugDrawPaint);
+            mapVisibleRect(targetView, scratchRect);
+            if (!scratchRect.equals(step.rects[index++])) return false;
+        }
 
-        debugDrawPaint.setStyle(Paint.Style.FILL);
-        debugDrawPaint.setTextSize(30);
-        canvas.drawText(String.valueOf(degrees), mCenterX - 100, mCenterY + 120, debugDrawPaint);
-    }
+        beginInvalidateBatch();
+        beginStepTransition();
 
-    @Override
-    protected void onDraw(Canvas canvas) {
+        this.introTargets = step.targets;
+        this.introTarget = step.targets[0];
+        applyTargetStyle(introTarget);
 
-        if (targetRect != null && mPaint != null)
+        ensureTargetCapacity(step.count);
+        for (int i = 0; i < step.count; i++)
         {
-            targetHighlightPaint.setAlpha(highlightAlpha);
-            canvas.drawRect(targetRect, targetHighlightPaint);
+            targetRects[i].set(step.rects[i]);
+            targetShapes[i] = step.shapes[i];
+        }
+        targetCount = step.count;
 
-            targetShapePaint.setStrokeWidth(strokeWidth);
-            canvas.drawPath(targetPath, targetShapePaint);
+        if (targetRect == null)
+            targetRect = new Rect();
+        targetRect.set(targetRects[0]);
+        for (int i = 1; i < targetCount; i++)
+            targetRect.union(targetRects[i]);
 
-            canvas.clipPath(targetPath, Region.Op.DIFFERENCE);
+        targetShapePath.set(step.targetPath);
+        targetPath = targetShapePath;
+        updateOverlayPath();
 
-            canvas.drawColor(overlayColor);
+        if (isCanvasContent)
+            canvasContent.setMessageLayout(step.message, step.messageLayout);
 
-            if (arrowPath != null)
-                canvas.drawPath(arrowPath, arrowPathPaint);
+        applyContentLayoutAlignment();
+        float[] pts = contentLayoutCurrentPosition == ContentLayoutPosition.TOP
+                ? step.arrowPointsTop : step.arrowPointsBottom;
+        System.arraycopy(pts, 0, arrowPoints, 0, targetCount * ARROW_POINTS);
+        buildArrowPath(arrowPoints, targetCount);
 
-            if (isDebugDraw)
-                debugDraw(canvas, 30, degrees);
-        }
-    }
+        ptx1 = (int) pts[2]; pty1 = (int) pts[3];
+        ptx2 = (int) pts[4]; pty2 = (int) pts[5];
+        ptx3 = (int) pts[6]; pty3 = (int) pts[7];
 
-    @Override
-    protected void onFinishInflate() {
-        super.onFinishInflate();
-        initChildren();
-    }
+        invalidateOverlayCache();
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        super.onLayout(changed, l, t, r, b);
-        initGfx();
-    }
+        if (isTransitionPending)
+            startStepTransition();
+        else if (isTransitioning)
+            finishStepTransition();
 
-    public void animateTargetRect()
-    {
-        animateTargetRect(DEFAULT_ANIMATION_DURATION);
+        invalidate();
+        endInvalidateBatch();
+        return true;
     }
 
-    public void animateTargetRect(long repeatDuration)
+    /*
+     * Waits for targets that are not there or not shown yet by polling, which
+     * unlike a layout listener on the target holds nothing once it gives up.
+     * After targetWaitTimeout the step is shown with the targets that made it.
+     */
+    private void setTargetViews(IntroTarget[] introTargets)
     {
-        if (Build.VERSION.SDK_INT < 11) return;
+        isWaitingForTargets = false;
+        boolean isTimedOut = SystemClock.uptimeMillis() - targetWaitStartMillis >= targetWaitTimeout;
 
-        ObjectAnimator strokeAnimator = ObjectAnimator.ofFloat(this, "strokeWidth", 0.5f, 8);
-        strokeAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        strokeAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        strokeAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                postInvalidate();
+        for (IntroTarget target : introTargets)
+        {
+            if (!target.hasReference() || isTimedOut) continue;
+
+            View targetView = resolveTarget(target);
+            if (targetView == null || !targetView.isShown())
+            {
+                if (targetWaitRunnable == null)
+                {
+                    targetWaitRunnable = new Runnable() {
+                        @Override
+                        public void run() {
+                            if (IntroLayout.this.introTargets != null)
+                                setTargetViews(IntroLayout.this.introTargets);
+                        }
+                    };
+                }
+                postDelayed(targetWaitRunnable, TARGET_WAIT_INTERVAL);
+                isWaitingForTargets = true;
+                return;
             }
-        });
-        strokeAnimator.setDuration(repeatDuration).start();
+        }
 
-        ObjectAnimator alphaAnimator = ObjectAnimator.ofInt(this, "highlightAlpha", 0, 50);
-        alphaAnimator.setRepeatMode(ValueAnimator.REVERSE);
-        alphaAnimator.setRepeatCount(ValueAnimator.INFINITE);
-        alphaAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                postInvalidate();
-            }
-        });
-        alphaAnimator.setDuration(repeatDuration).start();
-    }
+        ensureTargetCapacity(introTargets.length);
+        targetCount = 0;
 
-    public void disableContentLayoutBackground() {
-        contentLayout.setBackgroundColor(0x00000000);
-        txtContent.setTextColor(Color.WHITE);
-    }
+        for (IntroTarget target : introTargets)
+        {
+            View targetView = target.hasReference() ? resolveTarget(target) : null;
+            if (targetView == null || !targetView.isShown()) continue;
 
-    public IntroTarget getIntroTarget() {
-        return introTarget;
+            mapVisibleRect(targetView, targetRects[targetCount]);
+            targetShapes[targetCount] = target.shape != null ? target.shape
+                    : target.shapeType != null ? TargetShapes.of(target.shapeType) : null;
+            targetCount++;
+        }
+
+        if (targetCount > 0)
+            applyTargetRects();
+        else
+            Log.w(TAG, "no target of the step could be resolved in time.");
     }
 
-    public void setIntroTarget(IntroTarget introTarget) {
-        this.introTarget = introTarget;
-
-        if (introTarget.arrowColor != -1)
-            setArrowColor(introTarget.arrowColor);
-        if (introTarget.arrowStrokeWidth != -1)
-            setArrowStrokeWidth(introTarget.arrowStrokeWidth);
-        if (introTarget.highlightColor != -1)
-            setTargetHighlightColor(introTarget.highlightColor);
-        if (introTarget.shapeBorderColor != -1)
-            setTargetShapeBorderColor(introTarget.shapeBorderColor);
-        if (introTarget.shapeType != null)
-            setTargetShapeType(introTarget.shapeType);
+    private void ensureTargetCapacity(int count)
+    {
+        if (targetRects.length >= count) return;
 
-        setTargetView(introTarget.view);
+        this.targetRects = growRects(targetRects, count);
+        this.fromRects = growRects(fromRects, count);
+        this.frameRects = growRects(frameRects, count);
+        this.targetShapes = new TargetShape[count];
+
+        this.arrowPoints = Arrays.copyOf(arrowPoints, count * ARROW_POINTS);
+        this.fromArrowPoints = Arrays.copyOf(fromArrowPoints, count * ARROW_POINTS);
+        this.frameArrowPoints = Arrays.copyOf(frameArrowPoints, count * ARROW_POINTS);
+    }
+
+    private static Rect[] growRects(Rect[] rects, int count)
+    {
+        Rect[] grown = new Rect[count];
+        System.arraycopy(rects, 0, grown, 0, rects.length);
+        for (int i = rects.length; i < count; i++)
+            grown[i] = new Rect();
+        return grown;
     }
 
     public void setTargetView(final View targetView) {
@@ -406,72 +1604,174 @@ public class IntroLayout extends RelativeLayout {
                 }
             });
         } else {
-            Rect rect = new Rect();
-            targetView.getGlobalVisibleRect(rect);
-            setTargetRect(rect);
+            mapVisibleRect(targetView, scratchRect);
+            setTargetRect(scratchRect);
         }
     }
 
+    /* bounds of all current targets */
     public Rect getTargetRect() {
         return targetRect;
     }
 
     public void setTargetRect(Rect targetRect) {
-        this.targetRect = targetRect;
+        // copied, callers are free to reuse their rect
+        ensureTargetCapacity(1);
+        targetRects[0].set(targetRect);
+        targetShapes[0] = null;
+        targetCount = 1;
+
+        beginInvalidateBatch();
+        applyTargetRects();
+        endInvalidateBatch();
+    }
+
+    private void applyTargetRects()
+    {
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        if (this.targetRect == null)
+            this.targetRect = new Rect();
+
+        targetRect.set(targetRects[0]);
+        for (int i = 1; i < targetCount; i++)
+            targetRect.union(targetRects[i]);
+
         setTargetPath();
 
         if (getWidth() != 0 && getHeight() != 0)
         {
-            if (contentLayoutDefaultPosition == ContentLayoutPosition.FLOAT) {
-                Rect screenLeft = new Rect();
-                Rect screenRight = new Rect();
-                Rect screenTop = new Rect();
-                Rect screenBottom = new Rect();
-
-                getGlobalVisibleRect(screenLeft);
-                getGlobalVisibleRect(screenRight);
-                getGlobalVisibleRect(screenTop);
-                getGlobalVisibleRect(screenBottom);
-
-                screenLeft.right -= screenLeft.width() / 2;
-                screenRight.left = screenRight.width() / 2;
-                screenTop.bottom -= screenTop.height() / 2;
-                screenBottom.top = screenBottom.height() / 2;
-
-                boolean isInLeft, isInRight, isInTop, isInBottom;
-
-                isInLeft = screenLeft.intersect(targetRect);
-                isInRight = screenRight.intersect(targetRect);
-                isInTop = screenTop.intersect(targetRect);
-                isInBottom = screenBottom.intersect(targetRect);
-
-
-                if (isInLeft && isInRight && isInTop) {
-                    contentLayout.getLayoutParams().width = getWidth();
-                    contentLayout.setX(0);
-                    contentLayout.setY(targetRect.bottom);
-                } else if (isInLeft && isInRight && isInBottom) {
-                    contentLayout.getLayoutParams().width = getWidth();
-                    contentLayout.setX(0);
-                    contentLayout.setY(targetRect.top - contentLayout.getHeight());
-                } else if (isInLeft) {
-                    contentLayout.getLayoutParams().width = getWidth() - (targetRect.right + 50);
-                    contentLayout.setX(targetRect.right + 50);
-                    contentLayout.setY(targetRect.top);
-                } else if (isInRight) {
-                    contentLayout.getLayoutParams().width = getWidth() - (getWidth() - (targetRect.left - 50));
-                    contentLayout.setX(0);
-                    contentLayout.setY(targetRect.top);
+            if (isFloating()) {
+                long placementStart = metrics != null ? System.nanoTime() : 0;
+
+                PlacementSolver p = placementSolver;
+                p.solveFloat(getWidth(), getHeight(),
+                        targetRect.left, targetRect.top, targetRect.right, targetRect.bottom,
+                        getWidth(), measureContentHeight(), 50);
+
+                if (p.placement != PlacementSolver.NONE)
+                {
+                    ViewGroup.LayoutParams lp = contentLayout.getLayoutParams();
+                    if (lp.width != p.width)
+                    {
+                        lp.width = p.width;
+                        contentLayout.requestLayout();
+                    }
+                    contentLayout.setX(p.x);
+                    contentLayout.setY(p.y);
                 }
 
+                if (metrics != null)
+                    metrics.recordSection(IntroMetrics.SECTION_PLACEMENT,
+                            System.nanoTime() - placementStart);
+
                 disableContentLayoutBackground();
             } else {
                 applyContentLayoutAlignment();
-                this.arrowPath = makeArrowPath();
+                makeArrowPath();
+                invalidateOverlayCache();
+            }
+        }
+
+        if (isTransitionPending)
+            startStepTransition();
+        else if (isTransitioning)
+            finishStepTransition();
+
+        invalidate();
+
+        if (metrics != null)
+            metrics.recordSection(IntroMetrics.SECTION_SET_TARGET_RECT, System.nanoTime() - start);
+    }
+
+    /*
+     * Target rects are compared in every pre-draw. Layout and scroll are not
+     * the only ways a target moves: translation and property animations move
+     * it without either, but anything that moves it on screen draws a frame.
+     * The comparison reuses a rect, a stationary target costs no allocation
+     * and several changes within a frame end up in a single update.
+     */
+    private void startTargetTracking()
+    {
+        if (trackingObserver != null) return;
+
+        if (trackingPreDrawListener == null)
+        {
+            trackingPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    updateTrackedTargets();
+                    return true;
+                }
+            };
+        }
+
+        trackingObserver = getViewTreeObserver();
+        trackingObserver.addOnPreDrawListener(trackingPreDrawListener);
+    }
+
+    private void stopTargetTracking()
+    {
+        if (trackingObserver == null) return;
+
+        if (trackingObserver.isAlive())
+            trackingObserver.removeOnPreDrawListener(trackingPreDrawListener);
+
+        trackingObserver = null;
+    }
+
+    private void updateTrackedTargets()
+    {
+        if (introTargets == null || targetCount == 0) return;
+
+        boolean isChanged = false;
+        int index = 0;
+
+        for (IntroTarget target : introTargets)
+        {
+            if (!target.hasReference()) continue;
+            View targetView = resolveTarget(target);
+            if (index >= targetCount || targetView == null || !targetView.isShown()) return;
+
+            mapVisibleRect(targetView, scratchRect);
+            if (!scratchRect.equals(targetRects[index]))
+            {
+                targetRects[index].set(scratchRect);
+                isChanged = true;
             }
+            index++;
+        }
+
+        if (isChanged)
+            applyTargetRects();
+    }
+
+    public boolean isTargetTracking() {
+        return isTargetTracking;
+    }
+
+    /* follows targets that scroll, move by layout or animation or get pushed by the keyboard */
+    public void setTargetTracking(boolean isTargetTracking) {
+        this.isTargetTracking = isTargetTracking;
+
+        if (!isTargetTracking) {
+            stopTargetTracking();
+        } else if (isAttached) {
+            startTargetTracking();
         }
+    }
+
+    public long getStepTransitionDuration() {
+        return stepTransitionDuration;
+    }
+
+    /* morphs cutout and arrows between steps, 0 jumps to the new step */
+    public void setStepTransitionDuration(long stepTransitionDuration) {
+        this.stepTransitionDuration = stepTransitionDuration;
+    }
 
-        postInvalidate();
+    public int getTargetCount() {
+        return targetCount;
     }
 
     public Path getTargetPath() {
@@ -479,71 +1779,108 @@ public class IntroLayout extends RelativeLayout {
     }
 
     public void setTargetPath() {
-        targetPath = new Path();
+        buildTargetPath(targetRects, targetCount);
+        updateOverlayPath();
+    }
+
+    /* union of the shapes of all targets */
+    @SuppressLint("NewApi")
+    private void buildTargetPath(Rect[] rects, int count)
+    {
+        targetPath = targetShapePath;
+
+        if (count <= 1) {
+            shapeOf(0).mapTo(count == 1 ? rects[0] : targetRect, targetPath, shapeMatrix);
+        } else {
+            targetPath.reset();
 
-        int targetLeft = targetRect.left;
-        int targetRight = targetRect.right;
+            for (int i = 0; i < count; i++)
+            {
+                shapeOf(i).mapTo(rects[i], scratchPath, shapeMatrix);
 
-        switch (targetShapeType)
-        {
-            case SHAPE_RECTANGLE:
-                targetPath.addRect(new RectF(targetRect), Path.Direction.CW);
-                break;
-            case SHAPE_CIRCLE:
-                int cx = targetLeft + (targetRect.width() / 2);
-                int cy = targetRect.top + (targetRect.height() / 2);
-                int radius = (targetRect.width() > targetRect.height())
-                        ? targetRect.width() / 2 : targetRect.height() / 2;
-                targetPath.addCircle(cx, cy, radius, Path.Direction.CW);
-                break;
-            case SHAPE_HEXAGON:
-                /*int edge = (targetRect.width() > targetRect.height())
-                        ? targetRect.width() / 2 : targetRect.height() / 2;*/
-                int edge = targetRect.height() / 2;
-                int pcy = targetRect.top + targetRect.height() / 2;
-
-                targetLeft += edge / 2;
-                targetRight -= edge / 2;
-
-                targetPath.moveTo(targetLeft, pcy - edge);
-
-                //      -----
-                targetPath.lineTo(targetRight, pcy - edge);
-                //            \
-                targetPath.lineTo(targetRight + edge / 2, pcy);
-                //            /
-                targetPath.lineTo(targetRight, pcy + edge);
-                //      -----
-                targetPath.lineTo(targetLeft, pcy + edge);
-                //     \
-                targetPath.lineTo(targetLeft - edge / 2, pcy);
-                //  /
-                targetPath.lineTo(targetLeft, pcy - edge);
-
-                break;
+                // overlapping targets would cancel out in the even-odd overlay
+                if (Build.VERSION.SDK_INT >= 19)
+                    targetPath.op(scratchPath, Path.Op.UNION);
+                else
+                    targetPath.addPath(scratchPath);
+            }
         }
     }
 
+    private TargetShape shapeOf(int index)
+    {
+        return targetShapes.length > index && targetShapes[index] != null
+                ? targetShapes[index] : targetShape;
+    }
+
     public void setTargetPath(Path targetPath) {
         this.targetPath = targetPath;
+        updateOverlayPath();
+    }
+
+    /* content height at full width, measured once per placement */
+    private int measureContentHeight()
+    {
+        if (isCanvasContent) {
+            canvasContent.layout(getWidth(), getHeight(), false);
+            return canvasContent.panelRect.height();
+        }
+
+        contentLayout.measure(
+                MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        return contentLayout.getMeasuredHeight();
     }
 
     private void applyContentLayoutAlignment()
     {
-        Rect contentRect = new Rect();
-        contentLayout.getGlobalVisibleRect(contentRect);
+        long start = metrics != null ? System.nanoTime() : 0;
         RelativeLayout.LayoutParams lp = (RelativeLayout.LayoutParams) contentLayout.getLayoutParams();
+        ContentLayoutPosition position;
+
+        if (isPlacementSolverEnabled) {
+            PlacementSolver p = placementSolver;
+            p.solveEdge(getWidth(), getHeight(),
+                    targetRect.left, targetRect.top, targetRect.right, targetRect.bottom,
+                    measureContentHeight(),
+                    contentLayoutDefaultPosition == ContentLayoutPosition.TOP
+                            ? PlacementSolver.TOP_EDGE : PlacementSolver.BOTTOM_EDGE);
+            position = p.placement == PlacementSolver.TOP_EDGE
+                    ? ContentLayoutPosition.TOP : ContentLayoutPosition.BOTTOM;
+        } else if (isCanvasContent) {
+            // checked at the bottom, the current spot would flip it back and forth
+            canvasContent.layout(getWidth(), getHeight(), false);
+            position = Rect.intersects(canvasContent.panelRect, targetRect)
+                    ? ContentLayoutPosition.TOP : ContentLayoutPosition.BOTTOM;
+        } else {
+            Rect contentRect = scratchRect;
+            mapVisibleRect(contentLayout, contentRect);
+            position = contentRect.intersect(targetRect)
+                    ? ContentLayoutPosition.TOP : ContentLayoutPosition.BOTTOM;
+        }
+
+        if (metrics != null)
+            metrics.recordSection(IntroMetrics.SECTION_PLACEMENT, System.nanoTime() - start);
 
-        if (contentRect.intersect(targetRect))
+        if (isCanvasContent) {
+            contentLayoutCurrentPosition = position;
+            layoutCanvasContent();
+            return;
+        }
+
+        // setLayoutParams requests a layout pass, skip it when nothing moves
+        if (position == contentLayoutCurrentPosition)
+            return;
+
+        if (position == ContentLayoutPosition.TOP)
         {
             lp.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM, 0);
             lp.addRule(RelativeLayout.ALIGN_PARENT_TOP);
-            contentLayoutCurrentPosition = ContentLayoutPosition.TOP;
         } else {
             lp.addRule(RelativeLayout.ALIGN_PARENT_TOP, 0);
             lp.addRule(RelativeLayout.ALIGN_PARENT_BOTTOM);
-            contentLayoutCurrentPosition = ContentLayoutPosition.BOTTOM;
         }
+        contentLayoutCurrentPosition = position;
 
         contentLayout.setLayoutParams(lp);
     }
@@ -556,6 +1893,32 @@ public class IntroLayout extends RelativeLayout {
         this.isArrowCurve = isArrowCurve;
     }
 
+    public IntroMetrics getMetrics() {
+        return metrics;
+    }
+
+    /* null turns recording off */
+    public void setMetrics(IntroMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public boolean isPlacementSolverEnabled() {
+        return isPlacementSolverEnabled;
+    }
+
+    /* scores top and bottom placement instead of moving only when the content covers the target */
+    public void setPlacementSolverEnabled(boolean isPlacementSolverEnabled) {
+        this.isPlacementSolverEnabled = isPlacementSolverEnabled;
+    }
+
+    public ContentLayoutPosition getContentLayoutDefaultPosition() {
+        return contentLayoutDefaultPosition;
+    }
+
+    public void setContentLayoutDefaultPosition(ContentLayoutPosition contentLayoutDefaultPosition) {
+        this.contentLayoutDefaultPosition = contentLayoutDefaultPosition;
+    }
+
     public boolean isDebugDraw() {
         return isDebugDraw;
     }
@@ -564,6 +1927,16 @@ public class IntroLayout extends RelativeLayout {
         this.isDebugDraw = isDebugDraw;
     }
 
+    public boolean isDebugDirtyRegions() {
+        return isDebugDirtyRegions;
+    }
+
+    /* outlines the rect invalidated by the last animation frame */
+    public void setDebugDirtyRegions(boolean isDebugDirtyRegions) {
+        this.isDebugDirtyRegions = isDebugDirtyRegions;
+        invalidate();
+    }
+
     public ViewGroup getContentLayout() {
         return contentLayout;
     }
@@ -586,6 +1959,37 @@ public class IntroLayout extends RelativeLayout {
 
     public void setOverlayColor(int overlayColor) {
         this.overlayColor = overlayColor;
+
+        if (overlayPaint != null)
+            overlayPaint.setColor(overlayColor);
+
+        invalidateOverlayCache();
+    }
+
+    public boolean isOverlayCacheEnabled() {
+        return isOverlayCacheEnabled;
+    }
+
+    public void setOverlayCacheEnabled(boolean isOverlayCacheEnabled) {
+        this.isOverlayCacheEnabled = isOverlayCacheEnabled;
+
+        if (!isOverlayCacheEnabled)
+            releaseOverlayCache();
+    }
+
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    public void setRenderMode(RenderMode renderMode) {
+        this.renderMode = renderMode;
+
+        if (isGfxInitiated)
+        {
+            applyRenderMode();
+            invalidateOverlayCache();
+            invalidate();
+        }
     }
 
     public ShapeType getTargetShapeType() {
@@ -594,38 +1998,56 @@ public class IntroLayout extends RelativeLayout {
 
     public void setTargetShapeType(ShapeType targetShapeType) {
         this.targetShapeType = targetShapeType;
+        this.targetShape = TargetShapes.of(targetShapeType);
+    }
+
+    public TargetShape getTargetShape() {
+        return targetShape;
+    }
+
+    public void setTargetShape(TargetShape targetShape) {
+        this.targetShape = targetShape;
+    }
+
+    public IntroStyle getIntroStyle() {
+        return baseStyle;
+    }
+
+    /* style of targets that do not bring their own */
+    public void setIntroStyle(IntroStyle introStyle) {
+        setBaseStyle(introStyle);
     }
 
     public int getTargetHighlightColor() {
-        return targetHighlightColor;
+        return baseStyle.highlightColor;
     }
 
     public void setTargetHighlightColor(int targetHighlightColor) {
-        this.targetHighlightColor = targetHighlightColor;
+        setBaseStyle(baseStyle.withHighlightColor(targetHighlightColor));
     }
 
     public int getTargetShapeBorderColor() {
-        return targetShapeBorderColor;
+        return baseStyle.shapeBorderColor;
     }
 
     public void setTargetShapeBorderColor(int targetShapeBorderColor) {
-        this.targetShapeBorderColor = targetShapeBorderColor;
+        setBaseStyle(baseStyle.withShapeBorderColor(targetShapeBorderColor));
     }
 
     public int getArrowColor() {
-        return arrowColor;
+        return baseStyle.arrowColor;
     }
 
     public void setArrowColor(int arrowColor) {
-        this.arrowColor = arrowColor;
+        setBaseStyle(baseStyle.withArrowColor(arrowColor));
     }
 
     public int getArrowStrokeWidth() {
-        return arrowStrokeWidth;
+        return baseStyle.arrowStrokeWidth;
     }
 
     public void setArrowStrokeWidth(int arrowStrokeWidth) {
-        this.arrowStrokeWidth = arrowStrokeWidth;
+        setBaseStyle(baseStyle.withArrowStrokeWidth(arrowStrokeWidth));
     }
 
     public Paint getPaint() {
@@ -640,16 +2062,19 @@ public class IntroLayout extends RelativeLayout {
         return targetShapePaint;
     }
 
+    /* copied, and used until the style changes */
     public void setTargetShapePaint(Paint targetShapePaint) {
-        this.targetShapePaint = targetShapePaint;
+        this.targetShapePaint.set(targetShapePaint);
     }
 
     public Paint getArrowPathPaint() {
         return arrowPathPaint;
     }
 
+    /* copied, and used until the style changes */
     public void setArrowPathPaint(Paint arrowPathPaint) {
-        this.arrowPathPaint = arrowPathPaint;
+        this.arrowPathPaint.set(arrowPathPaint);
+        invalidateOverlayCache();
     }
 
     private float getInPixel(float dp)
@@ -658,15 +2083,6 @@ public class IntroLayout extends RelativeLayout {
                 TypedValue.COMPLEX_UNIT_DIP, dp, getResources().getDisplayMetrics());
     }
 
-    /* just for animate */
-    private float getStrokeWidth() {
-        return strokeWidth;
-    }
-
-    private void setStrokeWidth(float strokeWidth) {
-        this.strokeWidth = strokeWidth;
-    }
-
     public int getHighlightAlpha() {
         return highlightAlpha;
     }
@@ -674,5 +2090,4 @@ public class IntroLayout extends RelativeLayout {
     public void setHighlightAlpha(int highlightAlpha) {
         this.highlightAlpha = highlightAlpha;
     }
-    /* --- --- --- */
 }
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+/**
+ * Opt-in timing counters of an {@link IntroLayout}, set with
+ * {@link IntroLayout#setMetrics(IntroMetrics)}.
+ *
+ * Recording happens on the UI thread only and writes into preallocated
+ * arrays, it takes no locks and allocates nothing, so it can stay on in
+ * release builds. Read it with {@link #getSnapshot(Snapshot)}, ideally on
+ * the UI thread too, elsewhere a snapshot may be off by the sample in flight.
+ */
+public class IntroMetrics {
+
+    public static final int SECTION_SET_TARGET_RECT = 0;
+    public static final int SECTION_ARROW_PATH = 1;
+    public static final int SECTION_PLACEMENT = 2;
+    static final int SECTION_COUNT = 3;
+
+    /* draw time histogram, 250us buckets up to 32ms, the last one holds the rest */
+    private static final long BUCKET_NANOS = 250000L;
+    private static final int BUCKET_COUNT = 129;
+
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667L;
+
+    private final long frameIntervalNanos;
+
+    private final int[] drawHistogram = new int[BUCKET_COUNT];
+    private int drawCount;
+    private long drawMaxNanos;
+
+    private long lastFrameNanos = -1;
+    private int frameCount;
+    private int jankFrames;
+    private int droppedFrames;
+
+    private long stepRequestNanos = -1;
+    private int stepCount;
+    private long stepLastNanos, stepTotalNanos, stepMaxNanos;
+
+    private final int[] sectionCount = new int[SECTION_COUNT];
+    private final long[] sectionTotalNanos = new long[SECTION_COUNT];
+    private final long[] sectionMaxNanos = new long[SECTION_COUNT];
+
+    private int fullInvalidates, partialInvalidates;
+    private int overlayRasterizations, overlayCacheBlits;
+
+    public IntroMetrics() {
+        this(DEFAULT_FRAME_INTERVAL_NANOS);
+    }
+
+    /* frameIntervalNanos is the display refresh period, a frame later than 1.5 of it is jank */
+    public IntroMetrics(long frameIntervalNanos) {
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    /* --- --- --- recording, UI thread --- --- --- */
+
+    void recordDraw(long nanos)
+    {
+        int bucket = (int) Math.min(nanos / BUCKET_NANOS, BUCKET_COUNT - 1);
+        drawHistogram[bucket]++;
+        drawCount++;
+        if (nanos > drawMaxNanos) drawMaxNanos = nanos;
+
+        if (stepRequestNanos != -1)
+        {
+            long latency = System.nanoTime() - stepRequestNanos;
+            stepRequestNanos = -1;
+            stepCount++;
+            stepLastNanos = latency;
+            stepTotalNanos += latency;
+            if (latency > stepMaxNanos) stepMaxNanos = latency;
+        }
+    }
+
+    void recordFrame(long frameTimeNanos)
+    {
+        if (lastFrameNanos != -1)
+        {
+            long delta = frameTimeNanos - lastFrameNanos;
+            if (delta * 2 > frameIntervalNanos * 3)
+            {
+                jankFrames++;
+                droppedFrames += (int) (delta / frameIntervalNanos) - 1;
+            }
+        }
+        lastFrameNanos = frameTimeNanos;
+        frameCount++;
+    }
+
+    /* the frame clock stopped, the next frame starts a new run */
+    void pauseFrames()
+    {
+        lastFrameNanos = -1;
+    }
+
+    /* start of a step change, closed by the next draw */
+    void markStepRequested()
+    {
+        stepRequestNanos = System.nanoTime();
+    }
+
+    void recordInvalidate(boolean isFull)
+    {
+        if (isFull)
+            fullInvalidates++;
+        else
+            partialInvalidates++;
+    }
+
+    /* the overlay was painted with its paths, onto the screen or into the cache */
+    void recordOverlayRasterization()
+    {
+        overlayRasterizations++;
+    }
+
+    void recordOverlayCacheBlit()
+    {
+        overlayCacheBlits++;
+    }
+
+    void recordSection(int section, long nanos)
+    {
+        sectionCount[section]++;
+        sectionTotalNanos[section] += nanos;
+        if (nanos > sectionMaxNanos[section]) sectionMaxNanos[section] = nanos;
+    }
+
+    /* --- --- --- reading --- --- --- */
+
+    /* fills out and returns it, pass the same instance again to stay allocation-free */
+    public Snapshot getSnapshot(Snapshot out)
+    {
+        if (out == null)
+            out = new Snapshot();
+
+        out.drawCount = drawCount;
+        out.drawP50Nanos = drawPercentile(0.50f);
+        out.drawP90Nanos = drawPercentile(0.90f);
+        out.drawP99Nanos = drawPercentile(0.99f);
+        out.drawMaxNanos = drawMaxNanos;
+
+        out.frameCount = frameCount;
+        out.jankFrames = jankFrames;
+        out.droppedFrames = droppedFrames;
+
+        out.stepCount = stepCount;
+        out.stepLastNanos = stepLastNanos;
+        out.stepAverageNanos = stepCount > 0 ? stepTotalNanos / stepCount : 0;
+        out.stepMaxNanos = stepMaxNanos;
+
+        out.fullInvalidates = fullInvalidates;
+        out.partialInvalidates = partialInvalidates;
+        out.overlayRasterizations = overlayRasterizations;
+        out.overlayCacheBlits = overlayCacheBlits;
+
+        for (int i = 0; i < SECTION_COUNT; i++)
+        {
+            out.sectionCount[i] = sectionCount[i];
+            out.sectionAverageNanos[i] = sectionCount[i] > 0
+                    ? sectionTotalNanos[i] / sectionCount[i] : 0;
+            out.sectionMaxNanos[i] = sectionMaxNanos[i];
+        }
+
+        return out;
+    }
+
+    /* upper bound of the bucket holding the percentile, max for the overflow bucket */
+    private long drawPercentile(float percentile)
+    {
+        if (drawCount == 0) return 0;
+
+        int rank = (int) Math.ceil(drawCount * percentile);
+        int seen = 0;
+        for (int i = 0; i < BUCKET_COUNT - 1; i++)
+        {
+            seen += drawHistogram[i];
+            if (seen >= rank)
+                return Math.min((i + 1) * BUCKET_NANOS, drawMaxNanos);
+        }
+        return drawMaxNanos;
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            drawHistogram[i] = 0;
+        drawCount = 0;
+        drawMaxNanos = 0;
+
+        lastFrameNanos = -1;
+        frameCount = jankFrames = droppedFrames = 0;
+
+        stepRequestNanos = -1;
+        stepCount = 0;
+        stepLastNanos = stepTotalNanos = stepMaxNanos = 0;
+
+        fullInvalidates = partialInvalidates = 0;
+        overlayRasterizations = overlayCacheBlits = 0;
+
+        for (int i = 0; i < SECTION_COUNT; i++)
+        {
+            sectionCount[i] = 0;
+            sectionTotalNanos[i] = sectionMaxNanos[i] = 0;
+        }
+    }
+
+    /**
+     * Values of an {@link IntroMetrics} at one point in time.
+     * Section arrays are indexed by the SECTION_ constants.
+     */
+    public static class Snapshot {
+
+        /* onDraw duration, percentiles are accurate to 250us */
+        public int drawCount;
+        public long drawP50Nanos, drawP90Nanos, drawP99Nanos, drawMaxNanos;
+
+        /* pulse and transition frames */
+        public int frameCount;
+        public int jankFrames;
+        public int droppedFrames;
+
+        /* nextShow / previousShow to the first draw of the new step */
+        public int stepCount;
+        public long stepLastNanos, stepAverageNanos, stepMaxNanos;
+
+        /*
+         * Draw work, per step or per frame when read around one. Each draw fills
+         * the screen once, either by a rasterization or by a cache blit, a
+         * steady cached overlay should not rasterize at all.
+         */
+        public int fullInvalidates, partialInvalidates;
+        public int overlayRasterizations, overlayCacheBlits;
+
+        public final int[] sectionCount = new int[SECTION_COUNT];
+        public final long[] sectionAverageNanos = new long[SECTION_COUNT];
+        public final long[] sectionMaxNanos = new long[SECTION_COUNT];
+    }
+}
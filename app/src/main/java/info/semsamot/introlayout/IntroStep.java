@@ -0,0 +1,52 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.view.View;
+
+/**
+ * One step of a tour: a message and one or more targets highlighted together.
+ */
+public class IntroStep {
+
+    public IntroTarget[] targets;
+    public String message;
+    /* tapping a target moves to the next step, needs target pass-through */
+    public boolean advanceOnTargetTap;
+
+    public IntroStep(String message, IntroTarget... targets) {
+        this.message = message;
+        this.targets = targets;
+    }
+
+    public IntroStep(String message, View... targetViews) {
+        this.message = message;
+        this.targets = new IntroTarget[targetViews.length];
+        for (int i=0; i < targetViews.length; i++) {
+            this.targets[i] = new IntroTarget(targetViews[i]);
+        }
+    }
+
+    /* targets looked up by id when the step is shown */
+    public IntroStep(String message, int... targetViewIds) {
+        this.message = message;
+        this.targets = new IntroTarget[targetViewIds.length];
+        for (int i=0; i < targetViewIds.length; i++) {
+            this.targets[i] = new IntroTarget(targetViewIds[i]);
+        }
+    }
+}
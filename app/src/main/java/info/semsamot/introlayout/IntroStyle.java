@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package info.semsamot.introlayout;
+
+import android.graphics.Paint;
+
+import java.util.ArrayList;
+
+/**
+ * Immutable look of a step's targets and arrow. Recently used styles are
+ * interned, so equal values are usually the same instance, and each one
+ * carries fully configured paints a layout copies from when it switches
+ * steps, without creating any. The paints are shared and never modified.
+ */
+public final class IntroStyle {
+
+    /* a tour uses a handful of styles, more than this are generated ones not worth keeping */
+    static final int MAX_INTERNED_STYLES = 32;
+
+    /* least recently used first, looked up without allocating */
+    private static final ArrayList<IntroStyle> styles = new ArrayList<IntroStyle>();
+
+    public final int highlightColor;
+    public final int shapeBorderColor;
+    public final int arrowColor;
+    public final int arrowStrokeWidth;
+
+    /* templates copied by every layout using this style, never drawn with directly */
+    final Paint highlightPaint;
+    final Paint shapePaint;
+    final Paint arrowPaint;
+
+    private IntroStyle(int highlightColor, int shapeBorderColor,
+                       int arrowColor, int arrowStrokeWidth) {
+        this.highlightColor = highlightColor;
+        this.shapeBorderColor = shapeBorderColor;
+        this.arrowColor = arrowColor;
+        this.arrowStrokeWidth = arrowStrokeWidth;
+
+        this.highlightPaint = new Paint();
+        highlightPaint.setStyle(Paint.Style.FILL);
+        highlightPaint.setColor(highlightColor);
+
+        this.shapePaint = new Paint();
+        shapePaint.setAntiAlias(true);
+        shapePaint.setStyle(Paint.Style.STROKE);
+        shapePaint.setStrokeWidth(4);
+        shapePaint.setColor(shapeBorderColor);
+
+        this.arrowPaint = new Paint();
+        arrowPaint.setAntiAlias(true);
+        arrowPaint.setStyle(Paint.Style.STROKE);
+        arrowPaint.setStrokeWidth(arrowStrokeWidth);
+        arrowPaint.setColor(arrowColor);
+    }
+
+    public static IntroStyle of(int highlightColor, int shapeBorderColor,
+                                int arrowColor, int arrowStrokeWidth)
+    {
+        synchronized (styles)
+        {
+            for (int i = styles.size() - 1; i >= 0; i--)
+            {
+                IntroStyle style = styles.get(i);
+                if (style.highlightColor == highlightColor
+                        && style.shapeBorderColor == shapeBorderColor
+                        && style.arrowColor == arrowColor
+                        && style.arrowStrokeWidth == arrowStrokeWidth)
+                {
+                    if (i != styles.size() - 1)
+                        styles.add(styles.remove(i));
+                    return style;
+                }
+            }
+
+            // an evicted style stays valid for whoever holds it, an equal one is just another instance
+            if (styles.size() >= MAX_INTERNED_STYLES)
+                styles.remove(0);
+
+            IntroStyle style = new IntroStyle(highlightColor, shapeBorderColor,
+                    arrowColor, arrowStrokeWidth);
+            styles.add(style);
+            return style;
+        }
+    }
+
+    public IntroStyle withHighlightColor(int highlightColor) {
+        return of(highlightColor, shapeBorderColor, arrowColor, arrowStrokeWidth);
+    }
+
+    public IntroStyle withShapeBorderColor(int shapeBorderColor) {
+        return of(highlightColor, shapeBorderColor, arrowColor, arrowStrokeWidth);
+    }
+
+    public IntroStyle withArrowColor(int arrowColor) {
+        return of(highlightColor, shapeBorderColor, arrowColor, arrowStrokeWidth);
+    }
+
+    public IntroStyle withArrowStrokeWidth(int arrowStrokeWidth) {
+        return of(highlightColor, shapeBorderColor, arrowColor, arrowStrokeWidth);
+    }
+
+    /*
+     * This style with the per-target values of an IntroTarget laid over it,
+     * -1 keeps the value of this style.
+     */
+    IntroStyle overriddenBy(IntroTarget target)
+    {
+        if (target.style != null)
+            return target.style;
+
+        if (target.highlightColor == -1 && target.shapeBorderColor == -1
+                && target.arrowColor == -1 && target.arrowStrokeWidth == -1)
+            return this;
+
+        return of(target.highlightColor != -1 ? target.highlightColor : highlightColor,
+                target.shapeBorderColor != -1 ? target.shapeBorderColor : shapeBorderColor,
+                target.arrowColor != -1 ? target.arrowColor : arrowColor,
+                target.arrowStrokeWidth != -1 ? target.arrowStrokeWidth : arrowStrokeWidth);
+    }
+}
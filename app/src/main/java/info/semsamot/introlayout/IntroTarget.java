@@ -20,10 +20,25 @@ package info.semsamot.introlayout;
 
 import android.view.View;
 
+import java.lang.ref.WeakReference;
+
+/**
+ * A view to highlight, given directly, weakly, by id or by a resolver.
+ * All but a direct view are looked up when the step is shown and are
+ * never held strongly, so a target does not keep its Activity alive.
+ */
 public class IntroTarget {
 
+    /* held strongly, prefer one of the other references for long lived tours */
     public View view;
+    public int viewId = View.NO_ID;
+    public ViewResolver resolver;
+    private WeakReference<View> viewRef;
     public IntroLayout.ShapeType shapeType;
+    public TargetShape shape;
+
+    /* takes precedence over the -1 defaulted colors below, which cannot say white */
+    public IntroStyle style;
 
     public int shapeBorderColor     = -1;
     public int highlightColor       = -1;
@@ -34,6 +49,24 @@ public class IntroTarget {
         this.view = view;
     }
 
+    /* looked up in the window the intro is shown in */
+    public IntroTarget(int viewId) {
+        this.viewId = viewId;
+    }
+
+    public IntroTarget(ViewResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    private IntroTarget() {
+    }
+
+    public static IntroTarget weak(View view) {
+        IntroTarget target = new IntroTarget();
+        target.viewRef = new WeakReference<View>(view);
+        return target;
+    }
+
     public IntroTarget(View view, IntroLayout.ShapeType shapeType,
                        int shapeBorderColor, int highlightColor,
                        int arrowColor, int arrowStrokeWidth) {
@@ -44,4 +77,46 @@ public class IntroTarget {
         this.arrowColor = arrowColor;
         this.arrowStrokeWidth = arrowStrokeWidth;
     }
+
+    public IntroTarget(View view, TargetShape shape) {
+        this.view = view;
+        this.shape = shape;
+    }
+
+    public IntroTarget(View view, IntroStyle style) {
+        this.view = view;
+        this.style = style;
+    }
+
+    boolean hasReference()
+    {
+        return view != null || viewRef != null || viewId != View.NO_ID || resolver != null;
+    }
+
+    /*
+     * Current view of the target, looked up under root when it is given by id
+     * or resolver. A looked up view is remembered weakly while root stays the same.
+     * @return null when it is gone or not there yet
+     */
+    public View resolve(View root)
+    {
+        if (view != null) return view;
+
+        View cached = viewRef != null ? viewRef.get() : null;
+        if (viewId == View.NO_ID && resolver == null) return cached;
+
+        if (root == null) return null;
+        if (cached != null && cached.getRootView() == root) return cached;
+
+        View resolved = viewId != View.NO_ID ? root.findViewById(viewId) : resolver.resolve(root);
+        if (resolved != cached)
+            viewRef = resolved != null ? new WeakReference<View>(resolved) : null;
+        return resolved;
+    }
+
+    public interface ViewResolver
+    {
+        /* @return the view to highlight, or null while it does not exist */
+        public View resolve(View root);
+    }
 }
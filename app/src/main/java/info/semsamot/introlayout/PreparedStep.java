@@ -0,0 +1,117 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.annotation.SuppressLint;
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.Build;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import info.semsamot.introlayout.geom.ArrowGeometry;
+
+/**
+ * Geometry and text layout of a step computed ahead of time.
+ * Snapshotted on the main thread by {@link IntroLayout#prepareStep},
+ * computed on a background thread by {@link #compute()} and swapped in
+ * by {@link IntroLayout#applyPreparedStep}.
+ */
+class PreparedStep {
+
+    final int index;
+    final IntroTarget[] targets;
+    final CharSequence message;
+
+    /* main thread snapshot */
+    int viewWidth, viewHeight;
+    int count;
+    Rect[] rects;
+    TargetShape[] shapes;
+    boolean isArrowCurve;
+    int horizontalMargin, headSize;
+    TextPaint textPaint;
+    int textWidth;
+    float lineSpacingMultiplier;
+
+    /* computed in the background */
+    final Path targetPath = new Path();
+    float[] arrowPointsTop;
+    float[] arrowPointsBottom;
+    StaticLayout messageLayout;
+    volatile boolean isComputed;
+
+    PreparedStep(int index, IntroTarget[] targets, CharSequence message) {
+        this.index = index;
+        this.targets = targets;
+        this.message = message;
+    }
+
+    @SuppressLint("NewApi")
+    void compute()
+    {
+        Matrix matrix = new Matrix();
+        Path shapePath = new Path();
+
+        targetPath.reset();
+        for (int i = 0; i < count; i++)
+        {
+            shapes[i].mapTo(rects[i], shapePath, matrix);
+
+            if (count == 1)
+                targetPath.set(shapePath);
+            else if (Build.VERSION.SDK_INT >= 19)
+                targetPath.op(shapePath, Path.Op.UNION);
+            else
+                targetPath.addPath(shapePath);
+        }
+
+        // content position is only known when the step is applied, prepare both
+        arrowPointsTop = computeArrowPoints(true);
+        arrowPointsBottom = computeArrowPoints(false);
+
+        // StaticLayout warms the shared text layout cache for the message;
+        // TextView cannot take a precomputed layout at this API level
+        if (message != null && textPaint != null && textWidth > 0)
+        {
+            messageLayout = new StaticLayout(message, textPaint, textWidth,
+                    Layout.Alignment.ALIGN_NORMAL, lineSpacingMultiplier, 0, true);
+        }
+
+        isComputed = true;
+    }
+
+    private float[] computeArrowPoints(boolean isContentAtTop)
+    {
+        float[] pts = new float[count * IntroLayout.ARROW_POINTS];
+        ArrowGeometry g = new ArrowGeometry();
+
+        for (int i = 0; i < count; i++)
+        {
+            Rect rect = rects[i];
+            g.compute(viewWidth, viewHeight,
+                    rect.left, rect.top, rect.right, rect.bottom,
+                    isContentAtTop, isArrowCurve, horizontalMargin, headSize);
+
+            IntroLayout.writeArrowPoints(g, pts, i * IntroLayout.ARROW_POINTS);
+        }
+
+        return pts;
+    }
+}
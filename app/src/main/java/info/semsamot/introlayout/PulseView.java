@@ -0,0 +1,145 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.view.View;
+
+/**
+ * Target highlight or border of IntroLayout in a child view of its own, so the
+ * pulse is an alpha animation of the view instead of an IntroLayout.onDraw per
+ * frame. The view is only redrawn when the targets change. Both draw inside
+ * the target path only: the views sit above the overlay, so anything outside
+ * the cutout would show on top of it.
+ */
+@SuppressLint("ViewConstructor")
+class PulseView extends View {
+
+    static final int HIGHLIGHT = 0;
+    static final int BORDER = 1;
+
+    /* alpha the border fades down to between two peaks */
+    private static final float BORDER_MIN_ALPHA = 0.4f;
+
+    private final int kind;
+    private final Paint paint = new Paint();
+    private final Path path = new Path();
+
+    private boolean isPulsing;
+    private boolean isRising;
+    private long legDuration;
+
+    private final Runnable nextLeg = new Runnable() {
+        @Override
+        public void run() {
+            if (isPulsing)
+                animateLeg();
+        }
+    };
+
+    PulseView(Context context, int kind) {
+        super(context);
+        this.kind = kind;
+
+        if (kind == BORDER) {
+            paint.setAntiAlias(true);
+            paint.setStyle(Paint.Style.STROKE);
+            setAlpha(BORDER_MIN_ALPHA);
+        } else {
+            paint.setAntiAlias(true);
+            paint.setStyle(Paint.Style.FILL);
+            setAlpha(0);
+        }
+    }
+
+    void setColor(int color, int alpha)
+    {
+        paint.setColor(color);
+        paint.setAlpha(alpha);
+    }
+
+    /* the outer half of the stroke is clipped away by the cutout */
+    void setStrokeWidth(float strokeWidth)
+    {
+        paint.setStrokeWidth(strokeWidth);
+    }
+
+    /* null for no target */
+    void setGeometry(Path targetPath)
+    {
+        if (targetPath != null)
+            path.set(targetPath);
+        else
+            path.reset();
+
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (path.isEmpty()) return;
+
+        if (kind == HIGHLIGHT) {
+            canvas.drawPath(path, paint);
+        } else {
+            int saveCount = canvas.save();
+            canvas.clipPath(path);
+            canvas.drawPath(path, paint);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /* repeats and reverses with the given duration per leg until stopPulse() */
+    void startPulse(long duration)
+    {
+        if (isPulsing && duration == legDuration) return;
+
+        isPulsing = true;
+        legDuration = Math.max(duration, 1);
+        removeCallbacks(nextLeg);
+        animateLeg();
+    }
+
+    void stopPulse()
+    {
+        if (!isPulsing) return;
+
+        isPulsing = false;
+        removeCallbacks(nextLeg);
+        animate().cancel();
+    }
+
+    private void animateLeg()
+    {
+        isRising = !isRising;
+
+        float restAlpha = kind == HIGHLIGHT ? 0 : BORDER_MIN_ALPHA;
+        animate().alpha(isRising ? 1 : restAlpha).setDuration(legDuration);
+
+        postDelayed(nextLeg, legDuration);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stopPulse();
+        super.onDetachedFromWindow();
+    }
+}
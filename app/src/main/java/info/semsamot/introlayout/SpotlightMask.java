@@ -0,0 +1,125 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.BlurMaskFilter;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.Shader;
+
+import java.util.ArrayList;
+
+/**
+ * Feathered cutout of a target shape as an alpha mask shader. The blur is
+ * paid once when the mask is built, drawing it is a single rect with a
+ * bitmap shader. Masks are built at the exact target size, so the feather
+ * is as wide on screen as asked for, and cached per shape, size and feather
+ * for steps with the same target. Only step transitions stretch a mask with
+ * the shader's local matrix, and with it the feather, for a few frames.
+ */
+class SpotlightMask {
+
+    private static final int MAX_CACHED_MASKS = 6;
+
+    /* least recently used first, looked up without allocating */
+    private static final ArrayList<SpotlightMask> masks = new ArrayList<SpotlightMask>();
+
+    private final TargetShape shape;
+    private final int width, height;
+    private final float feather;
+    private final int padding;
+
+    final BitmapShader shader;
+
+    private SpotlightMask(TargetShape shape, int width, int height, float feather) {
+        this.shape = shape;
+        this.width = width;
+        this.height = height;
+        this.feather = feather;
+        this.padding = (int) Math.ceil(feather * 2);
+
+        Bitmap mask = Bitmap.createBitmap(width + 2 * padding, height + 2 * padding,
+                Bitmap.Config.ALPHA_8);
+        mask.eraseColor(Color.BLACK);
+
+        Path path = new Path();
+        shape.mapTo(new Rect(padding, padding, padding + width, padding + height),
+                path, new Matrix());
+
+        // the target stays fully clear, the feather only fades in outside of it
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+        Canvas canvas = new Canvas(mask);
+        canvas.drawPath(path, paint);
+        paint.setMaskFilter(new BlurMaskFilter(feather, BlurMaskFilter.Blur.OUTER));
+        canvas.drawPath(path, paint);
+
+        // clamped edges keep the overlay going beyond the mask
+        this.shader = new BitmapShader(mask, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+    }
+
+    /* mask of shape for a target of the given size, built on the first use */
+    static SpotlightMask obtain(TargetShape shape, int width, int height, float feather)
+    {
+        for (int i = masks.size() - 1; i >= 0; i--)
+        {
+            SpotlightMask mask = masks.get(i);
+            if (mask.shape == shape && mask.width == width
+                    && mask.height == height && mask.feather == feather)
+            {
+                if (i != masks.size() - 1)
+                    masks.add(masks.remove(i));
+                return mask;
+            }
+        }
+
+        SpotlightMask mask;
+        try {
+            mask = new SpotlightMask(shape, width, height, feather);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+
+        if (masks.size() >= MAX_CACHED_MASKS)
+            masks.remove(0);
+        masks.add(mask);
+        return mask;
+    }
+
+    /* bitmaps are left to the collector, a display list may still draw one */
+    static void clear()
+    {
+        masks.clear();
+    }
+
+    /* local matrix placing the mask over target, a plain translation for the size it was built for */
+    void fitTo(Rect target, Matrix matrix)
+    {
+        matrix.setTranslate(-padding, -padding);
+        if (target.width() != width || target.height() != height)
+            matrix.postScale((float) target.width() / width, (float) target.height() / height);
+        matrix.postTranslate(target.left, target.top);
+    }
+}
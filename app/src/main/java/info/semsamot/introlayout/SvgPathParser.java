@@ -0,0 +1,199 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.graphics.Path;
+
+/**
+ * Minimal SVG path data parser, enough for target outlines.
+ * Arcs (A) are not supported.
+ */
+final class SvgPathParser {
+
+    private final String data;
+    private int index;
+
+    private SvgPathParser(String data) {
+        this.data = data;
+    }
+
+    static Path parse(String pathData)
+    {
+        Path path = new Path();
+        parse(pathData, path);
+        return path;
+    }
+
+    /* appends to path */
+    static void parse(String pathData, Path path)
+    {
+        if (pathData == null)
+            throw new IllegalArgumentException("path data is null");
+
+        new SvgPathParser(pathData).parseInto(path);
+    }
+
+    private void parseInto(Path path)
+    {
+        float x = 0, y = 0;             // current point
+        float startX = 0, startY = 0;   // start of current sub path
+        float ctrlX = 0, ctrlY = 0;     // last control point, for S and T
+        char previous = ' ';
+        char command = ' ';
+
+        while (skipSeparators())
+        {
+            char c = data.charAt(index);
+
+            if (Character.isLetter(c)) {
+                command = c;
+                index++;
+            } else if (command == ' ' || command == 'Z' || command == 'z') {
+                throw new IllegalArgumentException("expected a command at " + index + " in: " + data);
+            } else if (command == 'M') {
+                command = 'L';  // implicit lineto after moveto
+            } else if (command == 'm') {
+                command = 'l';
+            }
+
+            boolean relative = Character.isLowerCase(command);
+            float ox = relative ? x : 0;
+            float oy = relative ? y : 0;
+
+            switch (Character.toUpperCase(command))
+            {
+                case 'M':
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.moveTo(x, y);
+                    startX = x;
+                    startY = y;
+                    break;
+                case 'L':
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.lineTo(x, y);
+                    break;
+                case 'H':
+                    x = ox + nextFloat();
+                    path.lineTo(x, y);
+                    break;
+                case 'V':
+                    y = oy + nextFloat();
+                    path.lineTo(x, y);
+                    break;
+                case 'C': {
+                    float x1 = ox + nextFloat(), y1 = oy + nextFloat();
+                    ctrlX = ox + nextFloat();
+                    ctrlY = oy + nextFloat();
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.cubicTo(x1, y1, ctrlX, ctrlY, x, y);
+                    break;
+                }
+                case 'S': {
+                    boolean isSmooth = "CcSs".indexOf(previous) >= 0;
+                    float x1 = isSmooth ? 2 * x - ctrlX : x;
+                    float y1 = isSmooth ? 2 * y - ctrlY : y;
+                    ctrlX = ox + nextFloat();
+                    ctrlY = oy + nextFloat();
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.cubicTo(x1, y1, ctrlX, ctrlY, x, y);
+                    break;
+                }
+                case 'Q':
+                    ctrlX = ox + nextFloat();
+                    ctrlY = oy + nextFloat();
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.quadTo(ctrlX, ctrlY, x, y);
+                    break;
+                case 'T': {
+                    boolean isSmooth = "QqTt".indexOf(previous) >= 0;
+                    ctrlX = isSmooth ? 2 * x - ctrlX : x;
+                    ctrlY = isSmooth ? 2 * y - ctrlY : y;
+                    x = ox + nextFloat();
+                    y = oy + nextFloat();
+                    path.quadTo(ctrlX, ctrlY, x, y);
+                    break;
+                }
+                case 'Z':
+                    path.close();
+                    x = startX;
+                    y = startY;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "unsupported path command '" + command + "' in: " + data);
+            }
+
+            previous = command;
+        }
+    }
+
+    /** @return false when the end of data is reached */
+    private boolean skipSeparators()
+    {
+        while (index < data.length())
+        {
+            char c = data.charAt(index);
+            if (c != ' ' && c != ',' && c != '\t' && c != '\n' && c != '\r')
+                return true;
+            index++;
+        }
+        return false;
+    }
+
+    private float nextFloat()
+    {
+        if (!skipSeparators())
+            throw new IllegalArgumentException("missing number at end of: " + data);
+
+        int start = index;
+        boolean hasDot = false;
+        boolean hasExponent = false;
+
+        if (data.charAt(index) == '-' || data.charAt(index) == '+')
+            index++;
+
+        while (index < data.length())
+        {
+            char c = data.charAt(index);
+
+            if (Character.isDigit(c)) {
+                index++;
+            } else if (c == '.' && !hasDot && !hasExponent) {
+                hasDot = true;
+                index++;
+            } else if ((c == 'e' || c == 'E') && !hasExponent) {
+                hasExponent = true;
+                index++;
+                if (index < data.length() && (data.charAt(index) == '-' || data.charAt(index) == '+'))
+                    index++;
+            } else {
+                break;
+            }
+        }
+
+        try {
+            return Float.parseFloat(data.substring(start, index));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad number at " + start + " in: " + data);
+        }
+    }
+}
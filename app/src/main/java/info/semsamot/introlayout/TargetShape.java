@@ -0,0 +1,96 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.util.SparseArray;
+
+import info.semsamot.introlayout.geom.ShapeGeometry;
+
+/**
+ * Shape drawn around a target. Subclasses describe the shape once in template
+ * space, templates are cached per aspect ratio and mapped onto the target rect
+ * with a {@link Matrix}.
+ *
+ * See {@link TargetShapes} for the built-in shapes.
+ */
+public abstract class TargetShape {
+
+    private static final int MAX_CACHED_TEMPLATES = 16;
+
+    private final SparseArray<Path> templates = new SparseArray<Path>();
+    /* buckets in templates, least recently used first, an int LRU does not box the keys */
+    private final int[] usedBuckets = new int[MAX_CACHED_TEMPLATES];
+
+    /**
+     * Builds the shape into an empty path, in a space where the target
+     * spans from (0, 0) to (aspectRatio, 1). aspectRatio is width / height.
+     */
+    protected abstract void makeTemplate(Path path, float aspectRatio);
+
+    synchronized Path getTemplate(int aspectBucket)
+    {
+        Path template = templates.get(aspectBucket);
+        int used = templates.size();
+
+        if (template != null)
+        {
+            // moved to the most recently used end
+            int i = used - 1;
+            while (usedBuckets[i] != aspectBucket)
+                i--;
+            System.arraycopy(usedBuckets, i + 1, usedBuckets, i, used - 1 - i);
+            usedBuckets[used - 1] = aspectBucket;
+            return template;
+        }
+
+        if (used >= MAX_CACHED_TEMPLATES)
+        {
+            templates.delete(usedBuckets[0]);
+            System.arraycopy(usedBuckets, 1, usedBuckets, 0, --used);
+        }
+
+        template = new Path();
+        makeTemplate(template, ShapeGeometry.bucketAspect(aspectBucket));
+        templates.put(aspectBucket, template);
+        usedBuckets[used] = aspectBucket;
+        return template;
+    }
+
+    /** Writes this shape fitted to rect into dst, matrix is used as scratch. */
+    public void mapTo(Rect rect, Path dst, Matrix matrix)
+    {
+        int width = rect.width();
+        int height = rect.height();
+
+        if (width <= 0 || height <= 0)
+        {
+            dst.reset();
+            return;
+        }
+
+        // aspect ratios are bucketed so near identical targets share a template
+        int aspectBucket = ShapeGeometry.aspectBucket(width, height);
+
+        matrix.setScale(ShapeGeometry.fitScaleX(aspectBucket, width), height);
+        matrix.postTranslate(rect.left, rect.top);
+
+        getTemplate(aspectBucket).transform(matrix, dst);
+    }
+}
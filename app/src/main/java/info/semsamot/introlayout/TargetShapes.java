@@ -0,0 +1,163 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import info.semsamot.introlayout.geom.ShapeGeometry;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Built-in {@link TargetShape}s and a registry for app defined ones.
+ */
+public final class TargetShapes {
+
+    private static final int MAX_PARSED_SHAPES = 32;
+
+    public static final TargetShape RECTANGLE = new TargetShape() {
+        @Override
+        protected void makeTemplate(Path path, float aspectRatio) {
+            float[] r = new float[4];
+            ShapeGeometry.rectangle(aspectRatio, r);
+            path.addRect(r[0], r[1], r[2], r[3], Path.Direction.CW);
+        }
+    };
+
+    public static final TargetShape CIRCLE = new TargetShape() {
+        @Override
+        protected void makeTemplate(Path path, float aspectRatio) {
+            float[] c = new float[3];
+            ShapeGeometry.circle(aspectRatio, c);
+            path.addCircle(c[0], c[1], c[2], Path.Direction.CW);
+        }
+    };
+
+    public static final TargetShape HEXAGON = new TargetShape() {
+        @Override
+        protected void makeTemplate(Path path, float aspectRatio) {
+            float[] pts = new float[12];
+            ShapeGeometry.hexagon(aspectRatio, pts);
+            path.moveTo(pts[0], pts[1]);
+            for (int i = 2; i < pts.length; i += 2)
+                path.lineTo(pts[i], pts[i + 1]);
+            path.close();
+        }
+    };
+
+    public static final TargetShape PILL = roundedRect(0.5f);
+
+    private static final Map<String, TargetShape> registeredShapes = new HashMap<String, TargetShape>();
+
+    private static final Map<String, TargetShape> parsedShapes =
+            new LinkedHashMap<String, TargetShape>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TargetShape> eldest) {
+                    return size() > MAX_PARSED_SHAPES;
+                }
+            };
+
+    private TargetShapes() {}
+
+    public static TargetShape of(IntroLayout.ShapeType shapeType)
+    {
+        switch (shapeType)
+        {
+            case SHAPE_CIRCLE:
+                return CIRCLE;
+            case SHAPE_HEXAGON:
+                return HEXAGON;
+            case SHAPE_RECTANGLE:
+            default:
+                return RECTANGLE;
+        }
+    }
+
+    /** cornerRadius is relative to the target height, 0.5 gives a pill. */
+    public static TargetShape roundedRect(final float cornerRadius)
+    {
+        return new TargetShape() {
+            @Override
+            protected void makeTemplate(Path path, float aspectRatio) {
+                float radius = Math.min(cornerRadius, Math.min(aspectRatio, 1) / 2);
+                path.addRoundRect(new RectF(0, 0, aspectRatio, 1), radius, radius, Path.Direction.CW);
+            }
+        };
+    }
+
+    /**
+     * Shape from SVG path data (M, L, H, V, C, S, Q, T and Z commands),
+     * stretched to the target bounds. Parsed shapes are kept in a bounded LRU
+     * so repeating the same path data never parses it again.
+     */
+    public static TargetShape fromSvgPath(String pathData)
+    {
+        synchronized (parsedShapes)
+        {
+            TargetShape shape = parsedShapes.get(pathData);
+
+            if (shape == null)
+            {
+                shape = new SvgTargetShape(SvgPathParser.parse(pathData));
+                parsedShapes.put(pathData, shape);
+            }
+
+            return shape;
+        }
+    }
+
+    public static void register(String name, TargetShape shape)
+    {
+        synchronized (registeredShapes) {
+            registeredShapes.put(name, shape);
+        }
+    }
+
+    public static TargetShape get(String name)
+    {
+        synchronized (registeredShapes) {
+            return registeredShapes.get(name);
+        }
+    }
+
+    private static class SvgTargetShape extends TargetShape {
+
+        private final Path unitPath;
+
+        SvgTargetShape(Path source) {
+            RectF bounds = new RectF();
+            source.computeBounds(bounds, true);
+
+            Matrix matrix = new Matrix();
+            matrix.setRectToRect(bounds, new RectF(0, 0, 1, 1), Matrix.ScaleToFit.FILL);
+
+            this.unitPath = new Path();
+            source.transform(matrix, unitPath);
+        }
+
+        @Override
+        protected void makeTemplate(Path path, float aspectRatio) {
+            Matrix matrix = new Matrix();
+            matrix.setScale(aspectRatio, 1);
+            unitPath.transform(matrix, path);
+        }
+    }
+}
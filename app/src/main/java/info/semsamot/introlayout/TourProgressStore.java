@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Remembers which step of which tour was seen, so a tour is shown once and
+ * resumes where the user left it.
+ *
+ * All disk I/O runs on a single background thread: the store is loaded
+ * asynchronously (call {@link #warmUp(Context)} early, e.g. in
+ * Application.onCreate) and progress is appended to a log file in batches.
+ * Queries are answered from memory once loaded, see {@link #whenLoaded(Runnable)}.
+ */
+public class TourProgressStore {
+
+    private static final String TAG = "info.semsamot.introlayout";
+
+    private static final String FILE_NAME = "introlayout_progress.log";
+    private static final String COMPACT_FILE_NAME = "introlayout_progress.log.tmp";
+    private static final long FLUSH_DELAY = 500;
+    private static final int COMPACT_THRESHOLD = 256;
+
+    public static final int STEP_NONE = -1;
+
+    private static final String RECORD_SEEN = "S";
+    private static final String RECORD_COMPLETED = "C";
+    private static final String RECORD_RESET = "R";
+
+    private static TourProgressStore instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /* single threaded, records reach the file in the order they were made */
+    private final Executor executor;
+
+    /* guarded by this */
+    private final Map<String, Integer> lastSeenSteps = new HashMap<String, Integer>();
+    private final Set<String> completedTours = new HashSet<String>();
+    private final List<String> pendingRecords = new ArrayList<String>();
+    private final List<Runnable> loadedCallbacks = new ArrayList<Runnable>();
+    private final Set<String> resetWhileLoading = new HashSet<String>();
+    private boolean isLoaded;
+    private boolean isFlushScheduled;
+    /* only touched on the executor */
+    private boolean isLogTorn;
+
+    TourProgressStore(Context context, Executor executor) {
+        this.context = context.getApplicationContext();
+        this.executor = executor;
+    }
+
+    public static synchronized TourProgressStore get(Context context)
+    {
+        if (instance == null)
+        {
+            instance = new TourProgressStore(context, Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "IntroLayout-progress");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    }));
+            instance.load();
+        }
+        return instance;
+    }
+
+    /* starts loading the store in the background */
+    public static void warmUp(Context context) {
+        get(context);
+    }
+
+    public synchronized boolean isLoaded() {
+        return isLoaded;
+    }
+
+    /* runs callback on the main thread once the store is loaded, right away if it is */
+    public void whenLoaded(Runnable callback)
+    {
+        synchronized (this)
+        {
+            if (!isLoaded)
+            {
+                loadedCallbacks.add(callback);
+                return;
+            }
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper())
+            callback.run();
+        else
+            mainHandler.post(callback);
+    }
+
+    /* false once the tour was completed; true while the store is still loading */
+    public synchronized boolean shouldShow(String tourId) {
+        return !completedTours.contains(tourId);
+    }
+
+    public synchronized int getLastSeenStep(String tourId)
+    {
+        Integer step = lastSeenSteps.get(tourId);
+        return step != null ? step : STEP_NONE;
+    }
+
+    public synchronized void markSeen(String tourId, int stepIndex)
+    {
+        Integer step = lastSeenSteps.get(tourId);
+        if (step != null && step == stepIndex) return;
+
+        lastSeenSteps.put(tourId, stepIndex);
+        append(RECORD_SEEN + '\t' + stepIndex + '\t' + tourId);
+    }
+
+    public synchronized void markCompleted(String tourId)
+    {
+        if (completedTours.contains(tourId)) return;
+
+        completedTours.add(tourId);
+        append(RECORD_COMPLETED + "\t0\t" + tourId);
+    }
+
+    public synchronized void reset(String tourId)
+    {
+        lastSeenSteps.remove(tourId);
+        completedTours.remove(tourId);
+        if (!isLoaded)
+            resetWhileLoading.add(tourId);
+        append(RECORD_RESET + "\t0\t" + tourId);
+    }
+
+    /* writes pending progress now, still off the calling thread */
+    public void flush()
+    {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePending();
+            }
+        });
+    }
+
+    private void append(String record)
+    {
+        pendingRecords.add(record);
+
+        if (!isFlushScheduled)
+        {
+            isFlushScheduled = true;
+            mainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, FLUSH_DELAY);
+        }
+    }
+
+    private File getFile() {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    void load()
+    {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Integer> steps = new HashMap<String, Integer>();
+                Set<String> completed = new HashSet<String>();
+                int records = readLog(steps, completed);
+
+                List<Runnable> callbacks;
+                synchronized (TourProgressStore.this)
+                {
+                    // progress recorded while loading is newer than the file,
+                    // and a reset while loading drops what the file knew of a tour
+                    for (Map.Entry<String, Integer> entry : steps.entrySet())
+                        if (!lastSeenSteps.containsKey(entry.getKey())
+                                && !resetWhileLoading.contains(entry.getKey()))
+                            lastSeenSteps.put(entry.getKey(), entry.getValue());
+                    for (String tourId : completed)
+                        if (!resetWhileLoading.contains(tourId))
+                            completedTours.add(tourId);
+                    resetWhileLoading.clear();
+
+                    isLoaded = true;
+                    callbacks = new ArrayList<Runnable>(loadedCallbacks);
+                    loadedCallbacks.clear();
+                }
+
+                // a torn last record would swallow the next appended one
+                if (records > COMPACT_THRESHOLD || isLogTorn)
+                    compact();
+
+                for (Runnable callback : callbacks)
+                    mainHandler.post(callback);
+            }
+        });
+    }
+
+    /*
+     * Only newline terminated records count, a crash mid-append leaves the
+     * last one without its newline, which sets isLogTorn.
+     * @return number of records read
+     */
+    private int readLog(Map<String, Integer> steps, Set<String> completed)
+    {
+        File file = getFile();
+        if (!file.exists()) return 0;
+
+        int records = 0;
+        BufferedReader reader = null;
+
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+
+            StringBuilder line = new StringBuilder();
+            int c;
+            while (true)
+            {
+                line.setLength(0);
+                while ((c = reader.read()) != -1 && c != '\n')
+                    line.append((char) c);
+
+                if (c == -1)
+                {
+                    isLogTorn = line.length() > 0;
+                    break;
+                }
+
+                String[] parts = line.toString().split("\t", 3);
+                if (parts.length != 3) continue;    // not a record
+
+                records++;
+                String tourId = parts[2];
+
+                if (RECORD_SEEN.equals(parts[0])) {
+                    try {
+                        steps.put(tourId, Integer.parseInt(parts[1]));
+                    } catch (NumberFormatException ignored) {}
+                } else if (RECORD_COMPLETED.equals(parts[0])) {
+                    completed.add(tourId);
+                } else if (RECORD_RESET.equals(parts[0])) {
+                    steps.remove(tourId);
+                    completed.remove(tourId);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "could not read tour progress.", e);
+        } finally {
+            closeQuietly(reader);
+        }
+
+        return records;
+    }
+
+    private void writePending()
+    {
+        List<String> records;
+        synchronized (this)
+        {
+            isFlushScheduled = false;
+            if (pendingRecords.isEmpty()) return;
+
+            records = new ArrayList<String>(pendingRecords);
+            pendingRecords.clear();
+        }
+
+        write(records, true);
+    }
+
+    /* rewrites the log with one record per tour, replacing it only once fully written */
+    private void compact()
+    {
+        List<String> records = new ArrayList<String>();
+        synchronized (this)
+        {
+            for (Map.Entry<String, Integer> entry : lastSeenSteps.entrySet())
+                records.add(RECORD_SEEN + '\t' + entry.getValue() + '\t' + entry.getKey());
+            for (String tourId : completedTours)
+                records.add(RECORD_COMPLETED + "\t0\t" + tourId);
+
+            // everything pending is part of the snapshot
+            pendingRecords.clear();
+        }
+
+        // a crash mid-write leaves the old log in place, rename is atomic
+        File compacted = new File(context.getFilesDir(), COMPACT_FILE_NAME);
+        if (write(compacted, records, false) && !compacted.renameTo(getFile()))
+            Log.w(TAG, "could not replace tour progress log.");
+    }
+
+    private void write(List<String> records, boolean append)
+    {
+        write(getFile(), records, append);
+    }
+
+    /* @return false when the records may not all be on disk */
+    private boolean write(File file, List<String> records, boolean append)
+    {
+        FileOutputStream out = null;
+
+        try {
+            out = new FileOutputStream(file, append);
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
+
+            StringBuilder builder = new StringBuilder();
+            for (String record : records)
+                builder.append(record).append('\n');
+
+            writer.write(builder.toString());
+            writer.flush();
+            out.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "could not write tour progress.", e);
+            return false;
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        } catch (IOException ignored) {}
+    }
+}
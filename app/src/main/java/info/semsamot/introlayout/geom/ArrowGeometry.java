@@ -0,0 +1,107 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.geom;
+
+/**
+ * Arrow from the content layout edge to the side of the target.
+ * Plain java so it can be benchmarked off device; reuse one instance.
+ */
+public final class ArrowGeometry {
+
+    private static final double HEAD_ANGLE = 22.5;
+
+    public float startX, startY;
+
+    public int
+            ptx1, pty1,
+            ptx2, pty2,
+            ptx3, pty3;
+
+    public float head1X, head1Y;
+    public float head2X, head2Y;
+
+    public double degrees;
+    public boolean isCurve;
+
+    /**
+     * @param contentAtTop true when the content layout is aligned to the top
+     * @param horizontalMargin gap between the arrow tip and the target, in px
+     * @param headSize length of the arrow head, in px
+     */
+    public void compute(int viewWidth, int viewHeight,
+                        int targetLeft, int targetTop, int targetRight, int targetBottom,
+                        boolean contentAtTop, boolean isCurve,
+                        int horizontalMargin, int headSize)
+    {
+        this.isCurve = isCurve;
+
+        int mContentLayoutEdge = contentAtTop ? 0 : viewHeight;
+        int mCenterX = viewWidth / 2;
+
+        /* arrow line */
+
+        ptx1 = mCenterX;
+        pty1 = mContentLayoutEdge;
+
+        int leftGap = targetLeft;
+        int rightGap = viewWidth - targetRight;
+        boolean pointsLeft = leftGap > rightGap;
+
+        if (pointsLeft)
+        {
+            ptx2 = leftGap / 2;
+            ptx3 = targetLeft - horizontalMargin;
+        } else {
+            ptx2 = targetRight + (rightGap / 2);
+            ptx3 = targetRight + horizontalMargin;
+        }
+
+        int targetRectBottom = contentAtTop ? targetBottom : -targetBottom;
+        pty2 = (mContentLayoutEdge + targetRectBottom) / 2;
+        pty3 = targetTop + ((targetBottom - targetTop) / 2);
+
+        if (isCurve) {
+            startX = mCenterX;
+        } else {
+            startX = ptx2;
+        }
+        startY = mContentLayoutEdge;
+
+        /* arrow head */
+        //                  -->          <--
+        int dx = pointsLeft ? -headSize : headSize;
+        int dy = headSize;
+
+        if (isCurve)
+        {
+            int distX = Math.abs(ptx3 - ptx2);
+            int distY = /*Math.abs*/(pty2 - pty3);
+            double angle = Math.atan2(distY, distX);
+            degrees = angle * (180 / Math.PI);
+        } else {
+            degrees = 0;
+        }
+
+        double offsetAng1 = pointsLeft ? HEAD_ANGLE : -HEAD_ANGLE;
+        double offsetAng2 = pointsLeft ? -HEAD_ANGLE : HEAD_ANGLE;
+
+        head1X = (float) (ptx3 + dx * Math.cos(Math.toRadians(degrees + offsetAng1)));
+        head1Y = (float) (pty3 + dy * Math.sin(Math.toRadians(degrees + offsetAng1)));
+        head2X = (float) (ptx3 + dx * Math.cos(Math.toRadians(degrees + offsetAng2)));
+        head2Y = (float) (pty3 + dy * Math.sin(Math.toRadians(degrees + offsetAng2)));
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.geom;
+
+/**
+ * Picks where the content layout goes around a target by scoring candidate
+ * anchors for overflow, overlap with the target, arrow length and how much
+ * of the screen the panel covers (lower is better).
+ * Results are kept for the last (target, viewport, content size), solving
+ * the same input again only compares the key. Plain java, reuse one instance.
+ */
+public final class PlacementSolver {
+
+    public static final int NONE = 0;
+    public static final int BELOW = 1;
+    public static final int ABOVE = 2;
+    public static final int RIGHT_OF = 3;
+    public static final int LEFT_OF = 4;
+    public static final int TOP_EDGE = 5;
+    public static final int BOTTOM_EDGE = 6;
+
+    /* covering the target is worse than any arrow length, then going off screen */
+    private static final float OVERLAP_WEIGHT = 100;
+    private static final float OVERFLOW_WEIGHT = 10;
+    private static final float COVER_WEIGHT = 0.5f;
+    private static final float PREFERRED_BONUS = 8;
+
+    /* side panels narrower than this part of the viewport are not considered */
+    private static final int MIN_SIDE_WIDTH_DIVISOR = 3;
+
+    public int placement;
+    public int x, y, width, height;
+    public float score;
+
+    /* cache key */
+    private boolean isFloatKey;
+    private int keyViewWidth = -1, keyViewHeight, keyContentWidth, keyContentHeight, keyGap, keyPreferred;
+    private int keyTargetLeft, keyTargetTop, keyTargetRight, keyTargetBottom;
+
+    private int targetLeft, targetTop, targetRight, targetBottom;
+    private int viewWidth, viewHeight;
+
+    /**
+     * Free placement around the target.
+     * @param contentHeight measured height of the content at contentWidth,
+     *                      narrower side panels grow proportionally
+     * @param gap horizontal gap between target and side panels, in px
+     */
+    public void solveFloat(int viewWidth, int viewHeight,
+                           int targetLeft, int targetTop, int targetRight, int targetBottom,
+                           int contentWidth, int contentHeight, int gap)
+    {
+        if (isCached(true, viewWidth, viewHeight, targetLeft, targetTop, targetRight, targetBottom,
+                contentWidth, contentHeight, gap, NONE))
+            return;
+
+        begin(viewWidth, viewHeight, targetLeft, targetTop, targetRight, targetBottom);
+
+        int targetCenterY = (targetTop + targetBottom) / 2;
+        int minSideWidth = viewWidth / MIN_SIDE_WIDTH_DIVISOR;
+
+        consider(BELOW, 0, targetBottom, viewWidth, contentHeight, NONE);
+        consider(ABOVE, 0, targetTop - contentHeight, viewWidth, contentHeight, NONE);
+
+        int rightWidth = viewWidth - (targetRight + gap);
+        if (rightWidth >= minSideWidth)
+        {
+            int h = scaledHeight(contentWidth, contentHeight, rightWidth);
+            consider(RIGHT_OF, targetRight + gap, clamp(targetCenterY - h / 2, viewHeight - h),
+                    rightWidth, h, NONE);
+        }
+
+        int leftWidth = targetLeft - gap;
+        if (leftWidth >= minSideWidth)
+        {
+            int h = scaledHeight(contentWidth, contentHeight, leftWidth);
+            consider(LEFT_OF, 0, clamp(targetCenterY - h / 2, viewHeight - h), leftWidth, h, NONE);
+        }
+    }
+
+    /**
+     * Full width panel at the top or bottom edge of the viewport.
+     * @param preferred TOP_EDGE or BOTTOM_EDGE, wins ties
+     */
+    public void solveEdge(int viewWidth, int viewHeight,
+                          int targetLeft, int targetTop, int targetRight, int targetBottom,
+                          int contentHeight, int preferred)
+    {
+        if (isCached(false, viewWidth, viewHeight, targetLeft, targetTop, targetRight, targetBottom,
+                viewWidth, contentHeight, 0, preferred))
+            return;
+
+        begin(viewWidth, viewHeight, targetLeft, targetTop, targetRight, targetBottom);
+
+        consider(BOTTOM_EDGE, 0, viewHeight - contentHeight, viewWidth, contentHeight, preferred);
+        consider(TOP_EDGE, 0, 0, viewWidth, contentHeight, preferred);
+    }
+
+    private boolean isCached(boolean isFloat, int viewWidth, int viewHeight,
+                             int targetLeft, int targetTop, int targetRight, int targetBottom,
+                             int contentWidth, int contentHeight, int gap, int preferred)
+    {
+        if (isFloatKey == isFloat && keyViewWidth == viewWidth && keyViewHeight == viewHeight
+                && keyTargetLeft == targetLeft && keyTargetTop == targetTop
+                && keyTargetRight == targetRight && keyTargetBottom == targetBottom
+                && keyContentWidth == contentWidth && keyContentHeight == contentHeight
+                && keyGap == gap && keyPreferred == preferred)
+            return true;
+
+        isFloatKey = isFloat;
+        keyViewWidth = viewWidth;
+        keyViewHeight = viewHeight;
+        keyTargetLeft = targetLeft;
+        keyTargetTop = targetTop;
+        keyTargetRight = targetRight;
+        keyTargetBottom = targetBottom;
+        keyContentWidth = contentWidth;
+        keyContentHeight = contentHeight;
+        keyGap = gap;
+        keyPreferred = preferred;
+        return false;
+    }
+
+    public void invalidate() {
+        keyViewWidth = -1;
+    }
+
+    private void begin(int viewWidth, int viewHeight,
+                       int targetLeft, int targetTop, int targetRight, int targetBottom)
+    {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.targetLeft = targetLeft;
+        this.targetTop = targetTop;
+        this.targetRight = targetRight;
+        this.targetBottom = targetBottom;
+
+        placement = NONE;
+        score = Float.MAX_VALUE;
+    }
+
+    private void consider(int candidate, int cx, int cy, int cw, int ch, int preferred)
+    {
+        if (cw <= 0 || ch < 0 || viewWidth <= 0 || viewHeight <= 0) return;
+
+        int right = cx + cw;
+        int bottom = cy + ch;
+
+        // pixels rows / columns falling outside the viewport
+        int overflow = Math.max(0, -cx) + Math.max(0, right - viewWidth)
+                + Math.max(0, -cy) + Math.max(0, bottom - viewHeight);
+
+        int overlapWidth = Math.min(right, targetRight) - Math.max(cx, targetLeft);
+        int overlapHeight = Math.min(bottom, targetBottom) - Math.max(cy, targetTop);
+        int overlap = overlapWidth > 0 && overlapHeight > 0 ? overlapWidth + overlapHeight : 0;
+
+        // from the target center to the closest point of the panel
+        float targetCenterX = (targetLeft + targetRight) / 2f;
+        float targetCenterY = (targetTop + targetBottom) / 2f;
+        float dx = Math.max(Math.max(cx - targetCenterX, targetCenterX - right), 0);
+        float dy = Math.max(Math.max(cy - targetCenterY, targetCenterY - bottom), 0);
+        float arrowLength = (float) Math.sqrt(dx * dx + dy * dy);
+
+        float cover = (float) cw * ch / viewWidth;
+
+        float candidateScore = OVERFLOW_WEIGHT * overflow + OVERLAP_WEIGHT * overlap
+                + arrowLength + COVER_WEIGHT * cover;
+        if (candidate == preferred)
+            candidateScore -= PREFERRED_BONUS;
+
+        if (candidateScore < score)
+        {
+            score = candidateScore;
+            placement = candidate;
+            x = cx;
+            y = cy;
+            width = cw;
+            height = ch;
+        }
+    }
+
+    private static int scaledHeight(int contentWidth, int contentHeight, int width)
+    {
+        if (contentWidth <= 0 || width >= contentWidth) return contentHeight;
+        return (int) ((long) contentHeight * contentWidth / width);
+    }
+
+    private static int clamp(int value, int max)
+    {
+        return Math.max(0, Math.min(value, max));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.geom;
+
+/**
+ * Template space math for target shapes. A template spans from (0, 0)
+ * to (aspect, 1), aspect ratios are bucketed so close targets share one.
+ */
+public final class ShapeGeometry {
+
+    /*
+     * Buckets are spaced evenly on a log scale, each is the same relative step,
+     * so a template is off by at most 2^(1/128), about half a percent, whether
+     * the target is a square button, a thin divider or a full width toolbar.
+     */
+    public static final int ASPECT_BUCKETS_PER_OCTAVE = 64;
+
+    private static final double LN_2 = Math.log(2);
+
+    private ShapeGeometry() {}
+
+    public static int aspectBucket(int width, int height)
+    {
+        return (int) Math.round(Math.log((double) width / height) / LN_2 * ASPECT_BUCKETS_PER_OCTAVE);
+    }
+
+    public static float bucketAspect(int aspectBucket)
+    {
+        return (float) Math.pow(2, (double) aspectBucket / ASPECT_BUCKETS_PER_OCTAVE);
+    }
+
+    /** writes left, top, right, bottom */
+    public static void rectangle(float aspect, float[] out)
+    {
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = aspect;
+        out[3] = 1;
+    }
+
+    /** circle around the target, radius is half of the longer side. writes cx, cy, radius */
+    public static void circle(float aspect, float[] out)
+    {
+        out[0] = aspect / 2;
+        out[1] = 0.5f;
+        out[2] = Math.max(aspect, 1) / 2;
+    }
+
+    /** flat top hexagon, side points stick out a quarter of the height. writes 6 x, y pairs */
+    public static void hexagon(float aspect, float[] out)
+    {
+        out[0] = 0.25f;             out[1] = 0;
+        out[2] = aspect - 0.25f;    out[3] = 0;
+        out[4] = aspect;            out[5] = 0.5f;
+        out[6] = aspect - 0.25f;    out[7] = 1;
+        out[8] = 0.25f;             out[9] = 1;
+        out[10] = 0;                out[11] = 0.5f;
+    }
+
+    /** horizontal scale from a template of the bucket onto a target this wide, vertical is the height */
+    public static float fitScaleX(int aspectBucket, int targetWidth)
+    {
+        return targetWidth / bucketAspect(aspectBucket);
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.tour;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A tour compiled at build time by the tour-compiler annotation processor
+ * into a {@link TourDefinition} named after the annotated class with an
+ * _IntroTour suffix. Target ids are checked against R.id during the build.
+ *
+ * <pre>
+ * &#64;IntroTour(id = "main", steps = {
+ *         &#64;IntroTourStep(message = "This is a test.", targets = R.id.btn1),
+ *         &#64;IntroTourStep(message = "This is a sample.", targets = R.id.btn2)
+ * })
+ * public class MainActivity extends Activity { ... }
+ *
+ * introController.setTour(new MainActivity_IntroTour());
+ * </pre>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface IntroTour {
+
+    /* used with IntroController.startShowOnce() */
+    String id();
+
+    IntroTourStep[] steps();
+}
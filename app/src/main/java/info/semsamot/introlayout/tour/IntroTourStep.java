@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.tour;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import info.semsamot.introlayout.IntroLayout;
+
+/**
+ * One step of an {@link IntroTour}. Colors and stroke width use -1 for the
+ * layout default like IntroTarget does, shape is left empty for the same.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({})
+public @interface IntroTourStep {
+
+    String message();
+
+    /* R.id values of the views highlighted together */
+    int[] targets();
+
+    /* at most one, empty keeps the shape of the layout */
+    IntroLayout.ShapeType[] shape() default {};
+
+    int shapeBorderColor() default -1;
+    int highlightColor() default -1;
+    int arrowColor() default -1;
+    int arrowStrokeWidth() default -1;
+}
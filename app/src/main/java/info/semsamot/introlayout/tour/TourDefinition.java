@@ -0,0 +1,32 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.tour;
+
+import info.semsamot.introlayout.IntroStep;
+
+/**
+ * A tour known ahead of time, usually generated from an {@link IntroTour}.
+ * Steps are plain constructor calls with id targets, loading one involves
+ * no parsing or reflection.
+ */
+public interface TourDefinition {
+
+    String getId();
+
+    /* a new array on each call, targets are resolved when their step is shown */
+    IntroStep[] createSteps();
+}
@@ -0,0 +1,156 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Color;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Interning of styles and their use by layouts: a step's style is what gets
+ * drawn, and one layout animating its paints leaves a layout sharing the
+ * style alone.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class IntroStyleTest {
+
+    private static final int FRAMES = 5;
+
+    /* colors no other test interns, so the cache holds only what a test put there */
+    private static int unique = 0x10000;
+
+    private static IntroStyle newStyle()
+    {
+        int color = 0xff000000 | unique++;
+        return IntroStyle.of(color, color, color, 3);
+    }
+
+    @Test
+    public void equalValuesAreTheSameInstance() {
+        IntroStyle style = IntroStyle.of(0xff102030, 0xff405060, 0xff708090, 5);
+
+        assertSame(style, IntroStyle.of(0xff102030, 0xff405060, 0xff708090, 5));
+        assertSame(style, style.withArrowStrokeWidth(5));
+        assertNotSame(style, style.withArrowStrokeWidth(6));
+    }
+
+    @Test
+    public void oldestStyleIsEvicted() {
+        IntroStyle oldest = newStyle();
+        for (int i = 0; i < IntroStyle.MAX_INTERNED_STYLES; i++)
+            newStyle();
+
+        IntroStyle again = IntroStyle.of(oldest.highlightColor, oldest.shapeBorderColor,
+                oldest.arrowColor, oldest.arrowStrokeWidth);
+        assertNotSame(oldest, again);
+        assertEquals(oldest.highlightColor, again.highlightColor);
+    }
+
+    @Test
+    public void recentlyUsedStyleStaysInterned() {
+        IntroStyle used = newStyle();
+        for (int i = 0; i < IntroStyle.MAX_INTERNED_STYLES - 1; i++)
+            newStyle();
+
+        // looking it up makes it the most recently used
+        assertSame(used, used.withArrowStrokeWidth(used.arrowStrokeWidth));
+        for (int i = 0; i < IntroStyle.MAX_INTERNED_STYLES - 1; i++)
+            newStyle();
+
+        assertSame(used, used.withArrowStrokeWidth(used.arrowStrokeWidth));
+    }
+
+    @Test
+    public void stepStyleIsDrawn() {
+        IntroStyle first = IntroStyle.of(0xff112233, 0xff445566, 0xff778899, 4);
+        IntroStyle second = IntroStyle.of(0xffaabbcc, 0xffddeeff, 0xff123456, 4);
+
+        RenderHarness h = new RenderHarness();
+        h.introLayout.setOverlayCacheEnabled(false);
+        h.introLayout.setStepTransitionDuration(0);
+
+        h.showStep(new IntroTarget(h.middle.view, first));
+        assertDrawnWith(h, first);
+
+        h.showStep(new IntroTarget(h.bottom.view, second));
+        assertDrawnWith(h, second);
+
+        // a target without a style of its own goes back to the layout's
+        h.showStep(h.top);
+        assertDrawnWith(h, h.introLayout.getIntroStyle());
+    }
+
+    private static void assertDrawnWith(RenderHarness h, IntroStyle style)
+    {
+        h.begin();
+        h.draw();
+
+        List<Integer> fills = h.canvas.fillColors;
+        List<Integer> strokes = h.canvas.strokeColors;
+
+        // highlight first, its alpha is the pulse's
+        assertEquals(rgb(style.highlightColor), rgb(fills.get(0)));
+        // shape border first, arrow last
+        assertEquals(style.shapeBorderColor, (int) strokes.get(0));
+        assertEquals(style.arrowColor, (int) strokes.get(strokes.size() - 1));
+    }
+
+    @Test
+    public void layoutsSharingAStyleAnimateIndependently() {
+        RenderHarness pulsing = new RenderHarness();
+        RenderHarness still = new RenderHarness();
+        IntroStyle style = pulsing.introLayout.getIntroStyle();
+        assertSame(style, still.introLayout.getIntroStyle());
+
+        for (RenderHarness h : new RenderHarness[]{ pulsing, still })
+        {
+            h.introLayout.setOverlayCacheEnabled(false);
+            h.introLayout.setStepTransitionDuration(0);
+            h.showStep(h.middle);
+        }
+
+        int stillAlpha = highlightAlpha(still);
+        int stillBorder = borderColor(still);
+
+        pulsing.introLayout.animateTargetRect();
+        int pulsingAlpha = highlightAlpha(pulsing);
+        for (int i = 0; i < FRAMES; i++)
+            pulsing.frame();
+
+        assertNotEquals(pulsingAlpha, highlightAlpha(pulsing));
+        assertEquals(stillAlpha, highlightAlpha(still));
+        assertEquals(stillBorder, borderColor(still));
+
+        // and the interned paints stay as the style made them
+        assertEquals(Color.alpha(style.highlightColor), style.highlightPaint.getAlpha());
+        assertEquals(style.shapeBorderColor, style.shapePaint.getColor());
+    }
+
+    private static int highlightAlpha(RenderHarness h)
+    {
+        h.begin();
+        h.draw();
+        return Color.alpha(h.canvas.fillColors.get(0));
+    }
+
+    private static int borderColor(RenderHarness h)
+    {
+        h.begin();
+        h.draw();
+        return h.canvas.strokeColors.get(0);
+    }
+
+    private static int rgb(int color)
+    {
+        return color & 0xffffff;
+    }
+}
@@ -0,0 +1,273 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Region;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canvas that draws nothing and counts what it is asked to draw. A fill is
+ * full screen when it covers the whole canvas, strokes never are. Paint
+ * colors of rect and path draws are kept in drawing order.
+ */
+class RecordingCanvas extends Canvas {
+
+    private final int width, height;
+    private final RectF pathBounds = new RectF();
+    private int saveCount = 1;
+
+    int drawOps;
+    int clipOps;
+    int fullScreenFills;
+    final List<Integer> fillColors = new ArrayList<Integer>();
+    final List<Integer> strokeColors = new ArrayList<Integer>();
+
+    RecordingCanvas(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    void reset()
+    {
+        drawOps = clipOps = fullScreenFills = 0;
+        fillColors.clear();
+        strokeColors.clear();
+        saveCount = 1;
+    }
+
+    private void fill(float l, float t, float r, float b, Paint paint)
+    {
+        drawOps++;
+
+        if (paint != null)
+            (paint.getStyle() == Paint.Style.STROKE ? strokeColors : fillColors).add(paint.getColor());
+
+        if (paint != null && paint.getStyle() == Paint.Style.STROKE) return;
+        if (l <= 0 && t <= 0 && r >= width && b >= height)
+            fullScreenFills++;
+    }
+
+    private void op()
+    {
+        drawOps++;
+    }
+
+    /* --- --- --- fills --- --- --- */
+
+    @Override
+    public void drawColor(int color) {
+        fill(0, 0, width, height, null);
+    }
+
+    @Override
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        fill(0, 0, width, height, null);
+    }
+
+    @Override
+    public void drawPaint(Paint paint) {
+        fill(0, 0, width, height, paint);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        fill(left, top, right, bottom, paint);
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+        fill(r.left, r.top, r.right, r.bottom, paint);
+    }
+
+    @Override
+    public void drawRect(RectF r, Paint paint) {
+        fill(r.left, r.top, r.right, r.bottom, paint);
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+        pathBounds.setEmpty();
+        path.computeBounds(pathBounds, false);
+
+        // bounds a shadowed path cannot tell are taken as the worst case
+        if (pathBounds.isEmpty())
+            fill(0, 0, width, height, paint);
+        else
+            fill(pathBounds.left, pathBounds.top, pathBounds.right, pathBounds.bottom, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        fill(left, top, left + bitmap.getWidth(), top + bitmap.getHeight(), paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        fill(dst.left, dst.top, dst.right, dst.bottom, paint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        fill(dst.left, dst.top, dst.right, dst.bottom, paint);
+    }
+
+    /* --- --- --- everything else only counts as an op --- --- --- */
+
+    @Override
+    public void drawPoint(float x, float y, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawOval(RectF oval, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawText(String text, float x, float y, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawText(String text, int start, int end, float x, float y, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawText(CharSequence text, int start, int end, float x, float y, Paint paint) {
+        op();
+    }
+
+    @Override
+    public void drawText(char[] text, int index, int count, float x, float y, Paint paint) {
+        op();
+    }
+
+    /* --- --- --- clip and state --- --- --- */
+
+    @Override
+    public boolean clipRect(Rect rect, Region.Op op) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(RectF rect, Region.Op op) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(Rect rect) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(RectF rect) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom, Region.Op op) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipPath(Path path, Region.Op op) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean clipPath(Path path) {
+        clipOps++;
+        return true;
+    }
+
+    @Override
+    public boolean getClipBounds(Rect bounds) {
+        bounds.set(0, 0, width, height);
+        return true;
+    }
+
+    @Override
+    public int save() {
+        return saveCount++;
+    }
+
+    @Override
+    public int save(int saveFlags) {
+        return saveCount++;
+    }
+
+    @Override
+    public void restore() {
+        saveCount--;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        this.saveCount = saveCount;
+    }
+
+    @Override
+    public int getSaveCount() {
+        return saveCount;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean isHardwareAccelerated() {
+        return false;
+    }
+}
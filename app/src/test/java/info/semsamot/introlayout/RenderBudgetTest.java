@@ -0,0 +1,158 @@
+package info.semsamot.introlayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Invalidation and fill budgets of IntroLayout, for every shape and content
+ * position: a pulse frame invalidates once and only the pulse area, a step
+ * change and a transition frame invalidate once, and every draw fills the
+ * screen exactly once.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class RenderBudgetTest {
+
+    private static final int FRAMES = 5;
+
+    private RenderHarness start(IntroLayout.ShapeType shapeType,
+                                IntroLayout.ContentLayoutPosition position)
+    {
+        RenderHarness h = new RenderHarness();
+        h.introLayout.setTargetShapeType(shapeType);
+        h.introLayout.setContentLayoutDefaultPosition(position);
+        h.introLayout.setStepTransitionDuration(0);
+        h.showStep(h.top);
+        h.layout();
+        return h;
+    }
+
+    private String name(IntroLayout.ShapeType shapeType, IntroLayout.ContentLayoutPosition position)
+    {
+        return shapeType + "/" + position;
+    }
+
+    @Test
+    public void pulseFrameInvalidatesPulseAreaOnce() {
+        for (IntroLayout.ShapeType shapeType : IntroLayout.ShapeType.values())
+        for (IntroLayout.ContentLayoutPosition position : IntroLayout.ContentLayoutPosition.values())
+        {
+            String name = name(shapeType, position);
+            RenderHarness h = start(shapeType, position);
+            h.showStep(h.middle);
+            h.layout();
+            h.introLayout.animateTargetRect();
+            h.frame();
+
+            for (int i = 0; i < FRAMES; i++)
+            {
+                h.begin();
+                h.frame();
+                assertEquals(name, 1, h.invalidates());
+                assertEquals(name, 0, h.fullInvalidates());
+
+                h.begin();
+                h.draw();
+                assertEquals(name, 1, h.fullScreenFills());
+            }
+        }
+    }
+
+    @Test
+    public void stepChangeInvalidatesOnce() {
+        for (IntroLayout.ShapeType shapeType : IntroLayout.ShapeType.values())
+        for (IntroLayout.ContentLayoutPosition position : IntroLayout.ContentLayoutPosition.values())
+        {
+            String name = name(shapeType, position);
+            RenderHarness h = start(shapeType, position);
+
+            IntroTarget[][] steps = {
+                    { h.middle, h.bottom }, { h.bottom }, { h.top }, { h.middle }
+            };
+            for (IntroTarget[] step : steps)
+            {
+                h.begin();
+                h.introLayout.setIntroTargets(step);
+                assertEquals(name, 1, h.invalidates());
+
+                h.layout();
+                h.begin();
+                h.draw();
+                assertEquals(name, 1, h.fullScreenFills());
+            }
+        }
+    }
+
+    @Test
+    public void transitionFrameInvalidatesOnceWithPulse() {
+        for (IntroLayout.ShapeType shapeType : IntroLayout.ShapeType.values())
+        {
+            // a floating panel does not animate between steps
+            IntroLayout.ContentLayoutPosition position = IntroLayout.ContentLayoutPosition.BOTTOM;
+            String name = name(shapeType, position);
+            RenderHarness h = start(shapeType, position);
+            h.introLayout.setStepTransitionDuration(300);
+            h.introLayout.animateTargetRect();
+
+            h.introLayout.setIntroTargets(new IntroTarget[]{ h.middle });
+            h.layout();
+
+            for (int i = 0; i < FRAMES; i++)
+            {
+                h.begin();
+                h.frame();
+                assertEquals(name, 1, h.invalidates());
+                assertEquals(name, 1, h.fullInvalidates());
+
+                h.begin();
+                h.draw();
+                assertEquals(name, 1, h.fullScreenFills());
+                assertEquals(name, 1, h.overlayRasterizations());
+            }
+        }
+    }
+
+    @Test
+    public void cachedOverlayRasterizesOncePerStep() {
+        RenderHarness h = start(IntroLayout.ShapeType.SHAPE_CIRCLE,
+                IntroLayout.ContentLayoutPosition.BOTTOM);
+        h.introLayout.setOverlayCacheEnabled(true);
+        h.showStep(h.middle);
+        h.layout();
+
+        h.begin();
+        h.draw();
+        assertEquals(1, h.overlayRasterizations());
+        assertEquals(1, h.fullScreenFills());
+
+        h.introLayout.animateTargetRect();
+        for (int i = 0; i < FRAMES; i++)
+        {
+            h.frame();
+            h.begin();
+            h.draw();
+            assertEquals(0, h.overlayRasterizations());
+            assertEquals(1, h.fullScreenFills());
+        }
+    }
+
+    @Test
+    public void softwareModeClipsAtMostTwice() {
+        RenderHarness h = start(IntroLayout.ShapeType.SHAPE_HEXAGON,
+                IntroLayout.ContentLayoutPosition.BOTTOM);
+        h.introLayout.setRenderMode(IntroLayout.RenderMode.SOFTWARE);
+        h.showStep(h.middle);
+        h.layout();
+
+        h.begin();
+        h.draw();
+        assertEquals(1, h.fullScreenFills());
+        // target cutout, and the opaque panel when there is one
+        assertTrue(h.canvas.clipOps <= 2);
+    }
+}
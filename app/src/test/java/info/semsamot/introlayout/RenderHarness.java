@@ -0,0 +1,189 @@
+package info.semsamot.introlayout;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.AttributeSet;
+import android.view.Gravity;
+import android.view.LayoutInflater;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.shadows.ShadowLooper;
+
+/**
+ * Runs an IntroLayout in a Robolectric window at a fixed size and draws it
+ * into a {@link RecordingCanvas}. The main looper stays paused, frames are
+ * driven by hand with {@link #frame()}, so nothing runs behind a test's back.
+ *
+ * Invalidations are read from the layout's IntroMetrics, fills from the canvas.
+ */
+class RenderHarness {
+
+    static final int WIDTH = 480, HEIGHT = 800;
+
+    private static final long FRAME_NANOS = 16666667L;
+
+    final IntroLayout introLayout;
+    final IntroMetrics metrics = new IntroMetrics();
+    final RecordingCanvas canvas = new RecordingCanvas(WIDTH, HEIGHT);
+
+    /* a small button at the top, a wide one in the middle and a thin bar at the bottom */
+    final IntroTarget top, middle, bottom;
+
+    private final ViewGroup decor;
+    private final IntroMetrics.Snapshot before = new IntroMetrics.Snapshot();
+    private final IntroMetrics.Snapshot after = new IntroMetrics.Snapshot();
+    private long frameTimeNanos = 1000000000L;
+
+    RenderHarness() {
+        ShadowLooper.pauseMainLooper();
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+
+        FrameLayout content = new FrameLayout(activity);
+        top = new IntroTarget(addTarget(content, 96, 48, Gravity.TOP | Gravity.LEFT));
+        middle = new IntroTarget(addTarget(content, 240, 96, Gravity.CENTER));
+        bottom = new IntroTarget(addTarget(content, WIDTH, 24, Gravity.BOTTOM));
+        activity.setContentView(content);
+
+        LayoutInflater inflater = LayoutInflater.from(activity).cloneInContext(activity);
+        inflater.setFactory(new LayoutInflater.Factory() {
+            @Override
+            public View onCreateView(String name, Context context, AttributeSet attrs) {
+                return IntroLayout.class.getName().equals(name)
+                        ? new FocusedIntroLayout(context, attrs) : null;
+            }
+        });
+
+        decor = (ViewGroup) activity.getWindow().getDecorView();
+        introLayout = (IntroLayout) inflater.inflate(R.layout.intro_layout, decor, false);
+        introLayout.setTargetRoot(decor);
+        introLayout.setMetrics(metrics);
+        decor.addView(introLayout);
+
+        layout();
+    }
+
+    private View addTarget(FrameLayout content, int width, int height, int gravity)
+    {
+        View view = new View(content.getContext());
+        content.addView(view, new FrameLayout.LayoutParams(width, height, gravity));
+        return view;
+    }
+
+    /* a measure and layout pass of the whole window, as a traversal would do */
+    void layout()
+    {
+        decor.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        decor.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    void showStep(IntroTarget... targets)
+    {
+        introLayout.setIntroTargets(targets);
+        layout();
+    }
+
+    /* runs the traversal the paused looper holds back, which attaches the window */
+    void attach()
+    {
+        ShadowLooper.runUiThreadTasks();
+        layout();
+    }
+
+    /* moves the layout away from the window origin, as a window inset or a parent would */
+    void offset(int left, int top)
+    {
+        ViewGroup.MarginLayoutParams lp = (ViewGroup.MarginLayoutParams) introLayout.getLayoutParams();
+        lp.leftMargin = left;
+        lp.topMargin = top;
+        introLayout.setLayoutParams(lp);
+        layout();
+    }
+
+    /* a tap at x, y of the layout, then whatever the tap posted, like a click */
+    boolean tap(float x, float y)
+    {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        MotionEvent up = MotionEvent.obtain(now, now + 50, MotionEvent.ACTION_UP, x, y, 0);
+
+        boolean isConsumed = introLayout.dispatchTouchEvent(down);
+        isConsumed &= introLayout.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+
+        ShadowLooper.runUiThreadTasks();
+        return isConsumed;
+    }
+
+    /* what the window does right before it draws a frame */
+    void preDraw()
+    {
+        decor.getViewTreeObserver().dispatchOnPreDraw();
+    }
+
+    /* one vsync of the frame clock */
+    void frame()
+    {
+        frameTimeNanos += FRAME_NANOS;
+        introLayout.onAnimationFrame(frameTimeNanos);
+    }
+
+    void draw()
+    {
+        introLayout.onDraw(canvas);
+    }
+
+    /* starts a measurement, read with the methods below */
+    void begin()
+    {
+        metrics.getSnapshot(before);
+        canvas.reset();
+    }
+
+    private IntroMetrics.Snapshot end()
+    {
+        return metrics.getSnapshot(after);
+    }
+
+    int invalidates()
+    {
+        IntroMetrics.Snapshot s = end();
+        return s.fullInvalidates + s.partialInvalidates
+                - before.fullInvalidates - before.partialInvalidates;
+    }
+
+    int fullInvalidates()
+    {
+        return end().fullInvalidates - before.fullInvalidates;
+    }
+
+    int overlayRasterizations()
+    {
+        return end().overlayRasterizations - before.overlayRasterizations;
+    }
+
+    int fullScreenFills()
+    {
+        return canvas.fullScreenFills;
+    }
+
+    /* stands in for a window with focus, which the paused looper never delivers */
+    static class FocusedIntroLayout extends IntroLayout {
+
+        FocusedIntroLayout(Context context, AttributeSet attrs) {
+            super(context, attrs);
+        }
+
+        @Override
+        boolean canAnimate() {
+            return getVisibility() == VISIBLE;
+        }
+    }
+}
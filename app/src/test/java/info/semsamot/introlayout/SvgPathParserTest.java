@@ -0,0 +1,172 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Path;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Every supported command, absolute and relative, checked against the Path
+ * calls it turns into. Malformed data throws instead of drawing half a shape.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SvgPathParserTest {
+
+    @Test
+    public void moveAndLine() {
+        assertOps("M10,20 L30,40 l5,-5",
+                "M10,20", "L30,40", "L35,35");
+        assertOps("m10 20 l5 5 M0 0",
+                "M10,20", "L15,25", "M0,0");
+    }
+
+    @Test
+    public void coordinatesAfterMoveAreLines() {
+        assertOps("M0,0 10,0 10,10", "M0,0", "L10,0", "L10,10");
+        assertOps("m5,5 10,0 0,10", "M5,5", "L15,5", "L15,15");
+    }
+
+    @Test
+    public void horizontalAndVertical() {
+        assertOps("M10,10 H30 V40 h-5 v-10",
+                "M10,10", "L30,10", "L30,40", "L25,40", "L25,30");
+    }
+
+    @Test
+    public void cubic() {
+        assertOps("M0,0 C10,0 20,10 20,20",
+                "M0,0", "C10,0,20,10,20,20");
+        assertOps("M10,10 c10,0 20,10 20,20",
+                "M10,10", "C20,10,30,20,30,30");
+    }
+
+    @Test
+    public void smoothCubicReflectsTheLastControlPoint() {
+        assertOps("M0,0 C0,10 10,10 10,0 S20,-10 20,0",
+                "M0,0", "C0,10,10,10,10,0", "C10,-10,20,-10,20,0");
+        assertOps("M0,0 c0,10 10,10 10,0 s10,-10 10,0",
+                "M0,0", "C0,10,10,10,10,0", "C10,-10,20,-10,20,0");
+        // without a cubic before, the first control point is the current point
+        assertOps("M0,0 S10,10 20,0", "M0,0", "C0,0,10,10,20,0");
+    }
+
+    @Test
+    public void quadratic() {
+        assertOps("M0,0 Q10,10 20,0", "M0,0", "Q10,10,20,0");
+        assertOps("M5,5 q10,10 20,0", "M5,5", "Q15,15,25,5");
+    }
+
+    @Test
+    public void smoothQuadraticReflectsTheLastControlPoint() {
+        assertOps("M0,0 Q10,10 20,0 T40,0",
+                "M0,0", "Q10,10,20,0", "Q30,-10,40,0");
+        assertOps("M0,0 q10,10 20,0 t20,0",
+                "M0,0", "Q10,10,20,0", "Q30,-10,40,0");
+        assertOps("M0,0 T20,0", "M0,0", "Q0,0,20,0");
+    }
+
+    @Test
+    public void closeReturnsToTheSubPathStart() {
+        assertOps("M10,10 l10,0 z l0,10",
+                "M10,10", "L20,10", "Z", "L10,20");
+        assertOps("M10,10 L20,10 Z m5,5",
+                "M10,10", "L20,10", "Z", "M15,15");
+    }
+
+    @Test
+    public void numberFormats() {
+        assertOps("M1.5-2.5L1e1,+3E-1", "M1.5,-2.5", "L10,0.3");
+        assertOps("M.5,.5", "M0.5,0.5");
+    }
+
+    @Test
+    public void malformedDataThrows() {
+        String[] malformed = {
+                "10,10 L20,20",     // coordinates before any command
+                "M10",              // missing y
+                "M10,10 L",         // command without coordinates
+                "M0,0 A5,5 0 0 1 10,10", // arcs are not supported
+                "M1..2,3",          // bad number
+                "M0,0 Z 10,10",     // coordinates after close
+                "M0,0 X1,1"         // unknown command
+        };
+
+        for (String data : malformed)
+        {
+            try {
+                SvgPathParser.parse(data, new RecordingPath());
+                fail("parsed: " + data);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+
+        try {
+            SvgPathParser.parse(null);
+            fail("parsed null");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void assertOps(String data, String... expected)
+    {
+        RecordingPath path = new RecordingPath();
+        SvgPathParser.parse(data, path);
+        assertEquals(data, Arrays.asList(expected), path.ops);
+    }
+
+    /* writes every call as its letter and coordinates, whole numbers without decimals */
+    private static class RecordingPath extends Path {
+
+        final List<String> ops = new ArrayList<String>();
+
+        private void op(char command, float... coords)
+        {
+            StringBuilder sb = new StringBuilder().append(command);
+            for (int i = 0; i < coords.length; i++)
+            {
+                if (i > 0) sb.append(',');
+                float c = coords[i];
+                if (c == (int) c)
+                    sb.append((int) c);
+                else
+                    sb.append(c);
+            }
+            ops.add(sb.toString());
+        }
+
+        @Override
+        public void moveTo(float x, float y) {
+            op('M', x, y);
+        }
+
+        @Override
+        public void lineTo(float x, float y) {
+            op('L', x, y);
+        }
+
+        @Override
+        public void quadTo(float x1, float y1, float x2, float y2) {
+            op('Q', x1, y1, x2, y2);
+        }
+
+        @Override
+        public void cubicTo(float x1, float y1, float x2, float y2, float x3, float y3) {
+            op('C', x1, y1, x2, y2, x3, y3);
+        }
+
+        @Override
+        public void close() {
+            op('Z');
+        }
+    }
+}
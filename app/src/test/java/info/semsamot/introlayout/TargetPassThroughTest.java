@@ -0,0 +1,135 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Rect;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * In pass-through mode a tap in the cutout reaches the target and is reported
+ * to the OnTargetTapListener, a tap anywhere else is kept from the views
+ * below, also when the layout does not start at the window origin.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TargetPassThroughTest {
+
+    private static final int OFFSET_LEFT = 12, OFFSET_TOP = 48;
+
+    private RenderHarness h;
+    private int clicks, belowClicks;
+    private View tappedTarget;
+
+    private void start(int offsetLeft, int offsetTop)
+    {
+        h = new RenderHarness();
+        h.offset(offsetLeft, offsetTop);
+        h.attach();
+        assertTrue(h.introLayout.isAttachedToWindow());
+
+        h.introLayout.setStepTransitionDuration(0);
+        h.introLayout.setTargetPassThrough(true);
+        h.introLayout.setOnTargetTapListener(new IntroLayout.OnTargetTapListener() {
+            @Override
+            public void onTargetTap(IntroLayout introLayout, View target) {
+                tappedTarget = target;
+            }
+        });
+
+        h.middle.view.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                clicks++;
+            }
+        });
+        h.top.view.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                belowClicks++;
+            }
+        });
+
+        h.showStep(h.middle);
+    }
+
+    @Test
+    public void tapInCutoutReachesTarget() {
+        start(0, 0);
+
+        Rect hole = h.introLayout.getTargetRect();
+        assertTrue(h.tap(hole.exactCenterX(), hole.exactCenterY()));
+
+        assertEquals(1, clicks);
+        assertSame(h.middle.view, tappedTarget);
+    }
+
+    @Test
+    public void tapOutsideCutoutIsConsumed() {
+        start(0, 0);
+
+        // over the top target, which is not part of this step
+        Rect below = new Rect();
+        h.top.view.getHitRect(below);
+        assertTrue(h.tap(below.exactCenterX(), below.exactCenterY()));
+
+        assertEquals(0, clicks);
+        assertEquals(0, belowClicks);
+        assertNull(tappedTarget);
+    }
+
+    @Test
+    public void passThroughOffDoesNotReachTarget() {
+        start(0, 0);
+        h.introLayout.setTargetPassThrough(false);
+
+        Rect hole = h.introLayout.getTargetRect();
+        assertTrue(h.tap(hole.exactCenterX(), hole.exactCenterY()));
+
+        assertEquals(0, clicks);
+        assertNull(tappedTarget);
+    }
+
+    @Test
+    public void cutoutIsInLayoutCoordinatesWhenOffset() {
+        start(OFFSET_LEFT, OFFSET_TOP);
+
+        int[] location = new int[2];
+        h.middle.view.getLocationInWindow(location);
+
+        Rect hole = h.introLayout.getTargetRect();
+        assertEquals(location[0] - OFFSET_LEFT, hole.left);
+        assertEquals(location[1] - OFFSET_TOP, hole.top);
+    }
+
+    @Test
+    public void tapInCutoutReachesTargetWhenOffset() {
+        start(OFFSET_LEFT, OFFSET_TOP);
+
+        Rect hole = h.introLayout.getTargetRect();
+        assertTrue(h.tap(hole.exactCenterX(), hole.exactCenterY()));
+
+        assertEquals(1, clicks);
+        assertSame(h.middle.view, tappedTarget);
+    }
+
+    @Test
+    public void tapAtTargetWindowPositionMissesWhenOffset() {
+        start(OFFSET_LEFT, OFFSET_TOP);
+
+        // the target's window coordinates, in the layout they are below and right of the hole
+        int[] location = new int[2];
+        h.middle.view.getLocationInWindow(location);
+        int width = h.middle.view.getWidth(), height = h.middle.view.getHeight();
+        assertTrue(h.tap(location[0] + width - OFFSET_LEFT / 2, location[1] + height - OFFSET_TOP / 2));
+
+        assertEquals(0, clicks);
+    }
+}
@@ -0,0 +1,78 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Path;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Templates are parsed once per aspect bucket and evicted least recently
+ * used first, so the buckets a tour keeps coming back to stay cached.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TargetShapeTest {
+
+    private static final int CAPACITY = 16;
+
+    private static class CountingShape extends TargetShape {
+
+        int templatesMade;
+
+        @Override
+        protected void makeTemplate(Path path, float aspectRatio) {
+            templatesMade++;
+            path.addRect(0, 0, aspectRatio, 1, Path.Direction.CW);
+        }
+    }
+
+    @Test
+    public void templateIsMadeOncePerBucket() {
+        CountingShape shape = new CountingShape();
+
+        Path template = shape.getTemplate(64);
+        assertSame(template, shape.getTemplate(64));
+        assertEquals(1, shape.templatesMade);
+    }
+
+    @Test
+    public void leastRecentlyUsedBucketIsEvicted() {
+        CountingShape shape = new CountingShape();
+
+        // the lowest buckets are the ones used again, a sorted eviction would drop them
+        for (int bucket = 0; bucket < CAPACITY; bucket++)
+            shape.getTemplate(bucket);
+        shape.getTemplate(0);
+        shape.getTemplate(1);
+
+        shape.getTemplate(100);
+        shape.getTemplate(101);
+        assertEquals(CAPACITY + 2, shape.templatesMade);
+
+        shape.getTemplate(0);
+        shape.getTemplate(1);
+        assertEquals(CAPACITY + 2, shape.templatesMade);
+
+        // 2 and 3 were the least recently used
+        shape.getTemplate(2);
+        shape.getTemplate(3);
+        assertEquals(CAPACITY + 4, shape.templatesMade);
+    }
+
+    @Test
+    public void tourCyclingThroughFewerBucketsThanTheCapacityNeverReparses() {
+        CountingShape shape = new CountingShape();
+        int[] buckets = { -300, -64, 0, 1, 2, 64, 65, 128, 543 };
+
+        for (int round = 0; round < 10; round++)
+            for (int bucket : buckets)
+                shape.getTemplate(bucket);
+
+        assertEquals(buckets.length, shape.templatesMade);
+    }
+}
@@ -0,0 +1,80 @@
+package info.semsamot.introlayout;
+
+import android.graphics.Rect;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The cutout follows a tracked target that moves without a layout or scroll
+ * event, and a target that stays put costs no invalidation per frame.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TargetTrackingTest {
+
+    private RenderHarness h;
+
+    @Before
+    public void setUp() {
+        h = new RenderHarness();
+        h.introLayout.setStepTransitionDuration(0);
+        h.introLayout.setTargetTracking(true);
+        h.attach();
+        assertTrue(h.introLayout.isAttachedToWindow());
+
+        h.showStep(h.middle);
+    }
+
+    @Test
+    public void holeFollowsTranslatedTarget() {
+        Rect before = new Rect(h.introLayout.getTargetRect());
+
+        h.middle.view.setTranslationX(40);
+        h.middle.view.setTranslationY(-24);
+        h.preDraw();
+
+        Rect after = h.introLayout.getTargetRect();
+        assertEquals(before.left + 40, after.left);
+        assertEquals(before.top - 24, after.top);
+        assertEquals(before.width(), after.width());
+        assertEquals(before.height(), after.height());
+    }
+
+    @Test
+    public void holeFollowsTargetMovedBySetX() {
+        Rect before = new Rect(h.introLayout.getTargetRect());
+
+        h.middle.view.setX(h.middle.view.getX() - 30);
+        h.preDraw();
+
+        assertEquals(before.left - 30, h.introLayout.getTargetRect().left);
+    }
+
+    @Test
+    public void stationaryTargetDoesNotInvalidate() {
+        h.preDraw();
+
+        h.begin();
+        for (int i = 0; i < 5; i++)
+            h.preDraw();
+        assertEquals(0, h.invalidates());
+    }
+
+    @Test
+    public void stoppedTrackingLeavesHoleInPlace() {
+        Rect before = new Rect(h.introLayout.getTargetRect());
+
+        h.introLayout.setTargetTracking(false);
+        h.middle.view.setTranslationX(40);
+        h.preDraw();
+
+        assertEquals(before, h.introLayout.getTargetRect());
+    }
+}
@@ -0,0 +1,242 @@
+package info.semsamot.introlayout;
+
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The append log of TourProgressStore: what is written is read back by the
+ * next process, compaction and torn writes lose nothing that was complete,
+ * and a reset while loading wins over the file. A restart is a new store on
+ * the same files dir, background work runs when a test says so.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class TourProgressStoreTest {
+
+    private static final String LOG = "introlayout_progress.log";
+
+    private Context context;
+    private File log;
+
+    /* runs tasks only when asked to, in order */
+    private static class QueueExecutor implements Executor {
+
+        final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll()
+        {
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+                task.run();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = RuntimeEnvironment.application;
+        log = new File(context.getFilesDir(), LOG);
+        log.delete();
+        new File(context.getFilesDir(), LOG + ".tmp").delete();
+    }
+
+    private TourProgressStore open()
+    {
+        QueueExecutor executor = new QueueExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+        executor.runAll();
+        assertTrue(store.isLoaded());
+        return store;
+    }
+
+    private void flush(TourProgressStore store, QueueExecutor executor)
+    {
+        store.flush();
+        executor.runAll();
+    }
+
+    private void writeLog(String content) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(log);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private int countRecords() throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new FileReader(log));
+        int records = 0;
+        try {
+            while (reader.readLine() != null)
+                records++;
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    @Test
+    public void progressIsReplayedAfterRestart() {
+        QueueExecutor executor = new QueueExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+        executor.runAll();
+
+        store.markSeen("main", 0);
+        store.markSeen("main", 2);
+        store.markCompleted("settings");
+        store.markSeen("reset", 4);
+        store.reset("reset");
+        flush(store, executor);
+
+        TourProgressStore restarted = open();
+        assertEquals(2, restarted.getLastSeenStep("main"));
+        assertTrue(restarted.shouldShow("main"));
+        assertFalse(restarted.shouldShow("settings"));
+        assertEquals(TourProgressStore.STEP_NONE, restarted.getLastSeenStep("reset"));
+        assertTrue(restarted.shouldShow("reset"));
+    }
+
+    @Test
+    public void compactionKeepsTheLatestState() throws IOException {
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            records.append("S\t").append(i).append("\tmain\n");
+        records.append("C\t0\tdone\n");
+        records.append("S\t3\tgone\n");
+        records.append("R\t0\tgone\n");
+        writeLog(records.toString());
+
+        open();
+        // one record per tour left, the temp file renamed over the log
+        assertEquals(2, countRecords());
+        assertFalse(new File(context.getFilesDir(), LOG + ".tmp").exists());
+
+        TourProgressStore restarted = open();
+        assertEquals(299, restarted.getLastSeenStep("main"));
+        assertFalse(restarted.shouldShow("done"));
+        assertEquals(TourProgressStore.STEP_NONE, restarted.getLastSeenStep("gone"));
+    }
+
+    @Test
+    public void corruptAndTornRecordsAreIgnored() throws IOException {
+        writeLog("S\t2\tmain\n"
+                + "garbage\n"
+                + "S\tx\tother\n"
+                + "C\t0\tdone\n"
+                + "S\t5\tma");      // crashed mid-append
+
+        QueueExecutor executor = new QueueExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+        executor.runAll();
+
+        assertEquals(2, store.getLastSeenStep("main"));
+        assertEquals(TourProgressStore.STEP_NONE, store.getLastSeenStep("other"));
+        assertEquals(TourProgressStore.STEP_NONE, store.getLastSeenStep("ma"));
+        assertFalse(store.shouldShow("done"));
+
+        // the torn tail is gone, so the next record is not glued onto it
+        store.markSeen("next", 1);
+        flush(store, executor);
+
+        TourProgressStore restarted = open();
+        assertEquals(1, restarted.getLastSeenStep("next"));
+        assertEquals(2, restarted.getLastSeenStep("main"));
+    }
+
+    @Test
+    public void resetWhileLoadingWinsOverTheFile() throws IOException {
+        writeLog("S\t3\tmain\nC\t0\tmain\nS\t1\tkept\n");
+
+        QueueExecutor executor = new QueueExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+
+        // the load is queued but has not read the file yet
+        assertFalse(store.isLoaded());
+        store.reset("main");
+        executor.runAll();
+
+        assertTrue(store.isLoaded());
+        assertEquals(TourProgressStore.STEP_NONE, store.getLastSeenStep("main"));
+        assertTrue(store.shouldShow("main"));
+        assertEquals(1, store.getLastSeenStep("kept"));
+
+        flush(store, executor);
+        TourProgressStore restarted = open();
+        assertTrue(restarted.shouldShow("main"));
+        assertEquals(TourProgressStore.STEP_NONE, restarted.getLastSeenStep("main"));
+    }
+
+    @Test
+    public void progressMadeWhileLoadingIsNewerThanTheFile() throws IOException {
+        writeLog("S\t3\tmain\n");
+
+        QueueExecutor executor = new QueueExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+        store.markSeen("main", 5);
+        executor.runAll();
+
+        assertEquals(5, store.getLastSeenStep("main"));
+    }
+
+    @Test
+    public void recordsReachTheFileInTheOrderTheyWereMade() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        TourProgressStore store = new TourProgressStore(context, executor);
+        store.load();
+
+        // flushed one by one, the single thread writes them in this order
+        for (int step = 0; step <= 50; step++)
+        {
+            store.markSeen("main", step);
+            store.flush();
+        }
+
+        final CountDownLatch written = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                written.countDown();
+            }
+        });
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(51, countRecords());
+        assertEquals(50, open().getLastSeenStep("main"));
+    }
+}
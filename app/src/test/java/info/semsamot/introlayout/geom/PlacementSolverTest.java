@@ -0,0 +1,126 @@
+package info.semsamot.introlayout.geom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The panel goes where it covers nothing of the target and stays on screen
+ * when it can, and when it cannot it gives up screen space before the target.
+ */
+public class PlacementSolverTest {
+
+    private static final int VIEW_WIDTH = 480, VIEW_HEIGHT = 800;
+    private static final int GAP = 16;
+
+    private final PlacementSolver solver = new PlacementSolver();
+
+    private void solveFloat(int left, int top, int right, int bottom, int contentHeight)
+    {
+        solver.solveFloat(VIEW_WIDTH, VIEW_HEIGHT, left, top, right, bottom,
+                VIEW_WIDTH, contentHeight, GAP);
+    }
+
+    private void assertOnScreen()
+    {
+        assertTrue(solver.x >= 0 && solver.y >= 0);
+        assertTrue(solver.x + solver.width <= VIEW_WIDTH);
+        assertTrue(solver.y + solver.height <= VIEW_HEIGHT);
+    }
+
+    private void assertClearOf(int left, int top, int right, int bottom)
+    {
+        assertFalse("panel covers the target",
+                solver.x < right && left < solver.x + solver.width
+                        && solver.y < bottom && top < solver.y + solver.height);
+    }
+
+    @Test
+    public void targetNearTheTopGetsThePanelBelow() {
+        solveFloat(200, 20, 280, 68, 200);
+
+        assertEquals(PlacementSolver.BELOW, solver.placement);
+        assertEquals(68, solver.y);
+        assertOnScreen();
+        assertClearOf(200, 20, 280, 68);
+    }
+
+    @Test
+    public void targetNearTheBottomGetsThePanelAbove() {
+        solveFloat(200, 720, 280, 768, 200);
+
+        assertEquals(PlacementSolver.ABOVE, solver.placement);
+        assertEquals(720, solver.y + solver.height);
+        assertOnScreen();
+        assertClearOf(200, 720, 280, 768);
+    }
+
+    @Test
+    public void centredTargetWithoutRoomAboveOrBelowGetsThePanelBeside() {
+        // tall and narrow, 100px above and below but wide margins left and right
+        solveFloat(200, 100, 280, 700, 200);
+
+        assertTrue(solver.placement == PlacementSolver.RIGHT_OF
+                || solver.placement == PlacementSolver.LEFT_OF);
+        assertOnScreen();
+        assertClearOf(200, 100, 280, 700);
+    }
+
+    @Test
+    public void centredTargetWithoutRoomOnAnySideStaysClearOfIt() {
+        // too wide for a side panel, 250px above and below for a 300px panel
+        solveFloat(20, 250, 460, 550, 300);
+
+        assertTrue(solver.placement == PlacementSolver.BELOW
+                || solver.placement == PlacementSolver.ABOVE);
+        assertClearOf(20, 250, 460, 550);
+    }
+
+    @Test
+    public void panelTallerThanBothGapsOverflowsInsteadOfCovering() {
+        solveFloat(20, 350, 460, 450, 500);
+
+        assertTrue(solver.placement == PlacementSolver.BELOW
+                || solver.placement == PlacementSolver.ABOVE);
+        assertEquals(500, solver.height);
+        assertClearOf(20, 350, 460, 450);
+    }
+
+    @Test
+    public void edgePanelGoesToTheEdgeAwayFromTheTarget() {
+        solver.solveEdge(VIEW_WIDTH, VIEW_HEIGHT, 200, 20, 280, 68, 200, PlacementSolver.TOP_EDGE);
+        assertEquals(PlacementSolver.BOTTOM_EDGE, solver.placement);
+        assertEquals(VIEW_HEIGHT - 200, solver.y);
+
+        solver.solveEdge(VIEW_WIDTH, VIEW_HEIGHT, 200, 720, 280, 768, 200, PlacementSolver.BOTTOM_EDGE);
+        assertEquals(PlacementSolver.TOP_EDGE, solver.placement);
+        assertEquals(0, solver.y);
+    }
+
+    @Test
+    public void preferredEdgeWinsWhenBothAreClear() {
+        solver.solveEdge(VIEW_WIDTH, VIEW_HEIGHT, 200, 380, 280, 420, 100, PlacementSolver.TOP_EDGE);
+        assertEquals(PlacementSolver.TOP_EDGE, solver.placement);
+
+        solver.solveEdge(VIEW_WIDTH, VIEW_HEIGHT, 200, 380, 280, 420, 100, PlacementSolver.BOTTOM_EDGE);
+        assertEquals(PlacementSolver.BOTTOM_EDGE, solver.placement);
+    }
+
+    @Test
+    public void sameInputKeepsTheResultAndInvalidateSolvesAgain() {
+        solveFloat(200, 20, 280, 68, 200);
+        int placement = solver.placement;
+        float score = solver.score;
+
+        solver.placement = PlacementSolver.NONE;
+        solveFloat(200, 20, 280, 68, 200);
+        assertEquals(PlacementSolver.NONE, solver.placement);   // only the key was compared
+
+        solver.invalidate();
+        solveFloat(200, 20, 280, 68, 200);
+        assertEquals(placement, solver.placement);
+        assertEquals(score, solver.score, 0);
+    }
+}
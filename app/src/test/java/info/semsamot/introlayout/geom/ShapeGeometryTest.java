@@ -0,0 +1,37 @@
+package info.semsamot.introlayout.geom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Templates are shared between targets of close aspect ratios, the shared
+ * template may only be off by a fraction of a percent, thin and wide targets too.
+ */
+public class ShapeGeometryTest {
+
+    private static final float MAX_ASPECT_ERROR = 0.006f;
+
+    private static final int[][] TARGETS = {
+            { 48, 48 }, { 96, 48 }, { 1080, 56 }, { 1440, 4 },
+            { 56, 1080 }, { 4, 1440 }, { 2, 300 }, { 300, 2 }, { 77, 53 }
+    };
+
+    @Test
+    public void bucketAspectStaysCloseToTheTarget() {
+        for (int[] target : TARGETS)
+        {
+            float aspect = (float) target[0] / target[1];
+            float bucketAspect = ShapeGeometry.bucketAspect(
+                    ShapeGeometry.aspectBucket(target[0], target[1]));
+
+            float error = Math.abs(bucketAspect / aspect - 1);
+            assertTrue(target[0] + "x" + target[1] + " off by " + error, error <= MAX_ASPECT_ERROR);
+        }
+    }
+
+    @Test
+    public void closeTargetsShareABucket() {
+        assertTrue(ShapeGeometry.aspectBucket(1000, 500) == ShapeGeometry.aspectBucket(1002, 500));
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import info.semsamot.introlayout.geom.ArrowGeometry;
+
+/**
+ * Arrow control points and head, as computed by IntroLayout.makeArrowPath().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArrowBenchmark {
+
+    @Param({"true", "false"})
+    public boolean curve;
+
+    @Param({"true", "false"})
+    public boolean contentAtTop;
+
+    private final ArrowGeometry geometry = new ArrowGeometry();
+
+    @Benchmark
+    public void arrow(Scenario s, Blackhole bh)
+    {
+        geometry.compute(s.screenWidth, s.screenHeight,
+                s.targetLeft, s.targetTop, s.targetRight, s.targetBottom,
+                contentAtTop, curve, s.screenWidth / 24, s.screenWidth / 32);
+
+        bh.consume(geometry.head1X);
+        bh.consume(geometry.head2Y);
+    }
+}
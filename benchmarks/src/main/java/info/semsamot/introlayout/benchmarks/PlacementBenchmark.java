@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import info.semsamot.introlayout.geom.PlacementSolver;
+
+/**
+ * Scored content layout placement of IntroLayout, with and without the
+ * last-result cache that skips re-scoring while the target is still.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlacementBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private final PlacementSolver solver = new PlacementSolver();
+
+    @Benchmark
+    public void solveFloat(Scenario s, Blackhole bh)
+    {
+        if (!cached)
+            solver.invalidate();
+
+        solver.solveFloat(s.screenWidth, s.screenHeight,
+                s.targetLeft, s.targetTop, s.targetRight, s.targetBottom,
+                s.screenWidth, s.screenHeight / 5, s.screenWidth / 20);
+
+        bh.consume(solver.placement);
+        bh.consume(solver.y);
+    }
+
+    @Benchmark
+    public void solveEdge(Scenario s, Blackhole bh)
+    {
+        if (!cached)
+            solver.invalidate();
+
+        solver.solveEdge(s.screenWidth, s.screenHeight,
+                s.targetLeft, s.targetTop, s.targetRight, s.targetBottom,
+                s.screenHeight / 5, PlacementSolver.BOTTOM_EDGE);
+
+        bh.consume(solver.placement);
+        bh.consume(solver.score);
+    }
+}
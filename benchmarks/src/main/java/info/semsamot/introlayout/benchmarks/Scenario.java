@@ -0,0 +1,70 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Screen size and target position matrix shared by the benchmarks.
+ */
+@State(Scope.Thread)
+public class Scenario {
+
+    @Param({"480x800", "1080x1920", "1440x2560"})
+    public String screen;
+
+    @Param({"TOP_LEFT", "TOP_CENTER", "CENTER", "BOTTOM_LEFT", "BOTTOM_RIGHT"})
+    public String target;
+
+    public int screenWidth, screenHeight;
+    public int targetLeft, targetTop, targetRight, targetBottom;
+
+    @Setup
+    public void setUp()
+    {
+        String[] size = screen.split("x");
+        screenWidth = Integer.parseInt(size[0]);
+        screenHeight = Integer.parseInt(size[1]);
+
+        // roughly a button: a sixth of the width, a sixteenth of the height
+        int width = screenWidth / 6;
+        int height = screenHeight / 16;
+        int margin = screenWidth / 30;
+
+        if (target.startsWith("TOP")) {
+            targetTop = margin;
+        } else if (target.startsWith("BOTTOM")) {
+            targetTop = screenHeight - margin - height;
+        } else {
+            targetTop = (screenHeight - height) / 2;
+        }
+
+        if (target.endsWith("LEFT")) {
+            targetLeft = margin;
+        } else if (target.endsWith("RIGHT")) {
+            targetLeft = screenWidth - margin - width;
+        } else {
+            targetLeft = (screenWidth - width) / 2;
+        }
+
+        targetRight = targetLeft + width;
+        targetBottom = targetTop + height;
+    }
+}
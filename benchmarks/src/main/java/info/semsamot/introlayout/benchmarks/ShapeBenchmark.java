@@ -0,0 +1,84 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import info.semsamot.introlayout.geom.ShapeGeometry;
+
+/**
+ * The pure Java part of target shape geometry for every IntroLayout.ShapeType.
+ * template computes the points TargetShapes feeds into a template path (a
+ * template cache miss), fit the bucket and scale TargetShape.mapTo() builds
+ * its matrix from. Building and transforming the Path itself is native code
+ * and only measured on a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeBenchmark {
+
+    @Param({"SHAPE_RECTANGLE", "SHAPE_CIRCLE", "SHAPE_HEXAGON"})
+    public String shapeType;
+
+    private final float[] pts = new float[12];
+
+    @Benchmark
+    public void template(Scenario s, Blackhole bh)
+    {
+        int bucket = ShapeGeometry.aspectBucket(
+                s.targetRight - s.targetLeft, s.targetBottom - s.targetTop);
+        bh.consume(makeTemplate(ShapeGeometry.bucketAspect(bucket)));
+    }
+
+    @Benchmark
+    public void fit(Scenario s, Blackhole bh)
+    {
+        int width = s.targetRight - s.targetLeft;
+        int bucket = ShapeGeometry.aspectBucket(width, s.targetBottom - s.targetTop);
+
+        bh.consume(bucket);
+        bh.consume(ShapeGeometry.fitScaleX(bucket, width));
+    }
+
+    private float makeTemplate(float aspect)
+    {
+        if ("SHAPE_CIRCLE".equals(shapeType))
+            ShapeGeometry.circle(aspect, pts);
+        else if ("SHAPE_HEXAGON".equals(shapeType))
+            ShapeGeometry.hexagon(aspect, pts);
+        else
+            ShapeGeometry.rectangle(aspect, pts);
+
+        return pts[0] + pts[1] + pts[2];
+    }
+}
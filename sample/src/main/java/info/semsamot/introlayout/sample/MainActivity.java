@@ -4,31 +4,48 @@ import android.support.v7.app.ActionBarActivity;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
-import android.view.View;
-import android.widget.Button;
 
-import butterknife.ButterKnife;
-import butterknife.InjectView;
 import info.semsamot.introlayout.IntroController;
 import info.semsamot.introlayout.IntroLayout;
+import info.semsamot.introlayout.tour.IntroTour;
+import info.semsamot.introlayout.tour.IntroTourStep;
 
 
+@IntroTour(id = "main", steps = {
+        @IntroTourStep(message = "This is a test.", targets = R.id.btn1),
+        @IntroTourStep(message = "This is a sample.", targets = R.id.btn2)
+})
 public class MainActivity extends ActionBarActivity {
 
-    @InjectView(R.id.btn1) Button btn1;
-    @InjectView(R.id.btn2) Button btn2;
+    private IntroController introController;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-        ButterKnife.inject(this);
 
-        IntroController introController = new IntroController(this);
-        introController.getIntroLayout().setTargetShapeType(IntroLayout.ShapeType.SHAPE_RECTANGLE);
-        introController.setTargets(new View[]{btn1, btn2});
-        introController.setMessages(new String[]{"This is a test.", "This is a sample."});
-        introController.startShow();
+        introController = new IntroController(this);
+        // applied when the intro is inflated, onCreate stays free of it
+        introController.setOnLayoutInflatedListener(new IntroController.OnLayoutInflatedListener() {
+            @Override
+            public void onLayoutInflated(IntroLayout introLayout) {
+                introLayout.setTargetShapeType(IntroLayout.ShapeType.SHAPE_RECTANGLE);
+            }
+        });
+        // compiled from the @IntroTour above
+        introController.setTour(new MainActivity_IntroTour());
+
+        // after a rotation the tour goes on from the step it was on, or stays ended
+        if (savedInstanceState == null)
+            introController.startShow();
+        else
+            introController.restoreShow(savedInstanceState);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        introController.onSaveInstanceState(outState);
     }
 
     @Override
@@ -0,0 +1,333 @@
+/**
+ * Copyright 2014 semsamot
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package info.semsamot.introlayout.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+/**
+ * Compiles {@code @IntroTour} annotations into TourDefinition classes made of
+ * plain constructor calls, so a tour costs no parsing or reflection at runtime.
+ * Every target id has to be a constant of R.id, anything else fails the build.
+ *
+ * R.id is looked up in the package of the annotated class and its parents,
+ * the processor option introlayout.rPackage names the package explicitly.
+ */
+public class IntroTourProcessor extends AbstractProcessor {
+
+    static final String INTRO_TOUR = "info.semsamot.introlayout.tour.IntroTour";
+    static final String OPTION_R_PACKAGE = "introlayout.rPackage";
+    static final String SUFFIX = "_IntroTour";
+
+    private Elements elements;
+    private Messager messager;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(INTRO_TOUR);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_R_PACKAGE);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        this.elements = processingEnv.getElementUtils();
+        this.messager = processingEnv.getMessager();
+
+        TypeElement tourAnnotation = elements.getTypeElement(INTRO_TOUR);
+        if (tourAnnotation == null)
+            return false;
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(tourAnnotation))
+        {
+            TypeElement type = (TypeElement) element;
+            AnnotationMirror tour = findMirror(type, INTRO_TOUR);
+
+            Map<Integer, String> ids = findIds(type);
+            if (ids == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "@IntroTour: cannot find R.id for " + type.getQualifiedName()
+                                + ", set the " + OPTION_R_PACKAGE + " processor option", type, tour);
+                continue;
+            }
+
+            String source = compile(type, tour, ids);
+            if (source != null)
+                write(type, source);
+        }
+        return true;
+    }
+
+    /* @return the generated source, null when the tour has errors that were reported */
+    private String compile(TypeElement type, AnnotationMirror tour, Map<Integer, String> ids)
+    {
+        Map<String, AnnotationValue> tourValues = valuesOf(tour);
+        String id = (String) tourValues.get("id").getValue();
+        List<?> steps = (List<?>) tourValues.get("steps").getValue();
+        boolean hasErrors = false;
+
+        if (id.isEmpty()) {
+            error("@IntroTour: id is empty", type, tour, tourValues.get("id"));
+            hasErrors = true;
+        }
+        if (steps.isEmpty()) {
+            error("@IntroTour: a tour needs at least one step", type, tour, tourValues.get("steps"));
+            hasErrors = true;
+        }
+
+        String packageName = packageOf(type).getQualifiedName().toString();
+        StringBuilder out = new StringBuilder();
+
+        out.append("// Generated from @IntroTour on ").append(type.getQualifiedName())
+                .append(", do not edit.\n");
+        if (!packageName.isEmpty())
+            out.append("package ").append(packageName).append(";\n");
+        out.append("\n")
+                .append("import info.semsamot.introlayout.IntroLayout;\n")
+                .append("import info.semsamot.introlayout.IntroStep;\n")
+                .append("import info.semsamot.introlayout.IntroTarget;\n")
+                .append("import info.semsamot.introlayout.tour.TourDefinition;\n")
+                .append("\n")
+                .append("public final class ").append(generatedName(type))
+                .append(" implements TourDefinition {\n")
+                .append("\n")
+                .append("    public static final String ID = ").append(literal(id)).append(";\n")
+                .append("\n")
+                .append("    @Override\n")
+                .append("    public String getId() {\n")
+                .append("        return ID;\n")
+                .append("    }\n")
+                .append("\n")
+                .append("    @Override\n")
+                .append("    public IntroStep[] createSteps() {\n")
+                .append("        return new IntroStep[] {\n");
+
+        for (int i = 0; i < steps.size(); i++)
+        {
+            AnnotationMirror step = (AnnotationMirror) ((AnnotationValue) steps.get(i)).getValue();
+            Map<String, AnnotationValue> values = valuesOf(step);
+
+            String message = (String) values.get("message").getValue();
+            List<?> targets = (List<?>) values.get("targets").getValue();
+            List<?> shape = (List<?>) values.get("shape").getValue();
+
+            if (message.isEmpty()) {
+                error("@IntroTourStep " + i + ": message is empty", type, step, values.get("message"));
+                hasErrors = true;
+            }
+            if (targets.isEmpty()) {
+                error("@IntroTourStep " + i + ": no targets", type, step, values.get("targets"));
+                hasErrors = true;
+            }
+            if (shape.size() > 1) {
+                error("@IntroTourStep " + i + ": at most one shape", type, step, values.get("shape"));
+                hasErrors = true;
+            }
+
+            String shapeType = shape.size() == 1
+                    ? "IntroLayout.ShapeType." + ((VariableElement) ((AnnotationValue) shape.get(0))
+                            .getValue()).getSimpleName()
+                    : "null";
+
+            out.append("                new IntroStep(").append(literal(message));
+            for (Object target : targets)
+            {
+                AnnotationValue targetValue = (AnnotationValue) target;
+                String name = ids.get((Integer) targetValue.getValue());
+                if (name == null) {
+                    error("@IntroTourStep " + i + ": " + targetValue + " is not an R.id constant",
+                            type, step, targetValue);
+                    hasErrors = true;
+                    continue;
+                }
+
+                out.append(",\n                        target(").append(name)
+                        .append(", ").append(shapeType)
+                        .append(", ").append(color(values.get("shapeBorderColor")))
+                        .append(", ").append(color(values.get("highlightColor")))
+                        .append(", ").append(color(values.get("arrowColor")))
+                        .append(", ").append(values.get("arrowStrokeWidth").getValue())
+                        .append(")");
+            }
+            out.append(i < steps.size() - 1 ? "),\n" : ")\n");
+        }
+
+        out.append("        };\n")
+                .append("    }\n")
+                .append("\n")
+                .append("    private static IntroTarget target(int viewId, IntroLayout.ShapeType shapeType,\n")
+                .append("                                      int shapeBorderColor, int highlightColor,\n")
+                .append("                                      int arrowColor, int arrowStrokeWidth) {\n")
+                .append("        IntroTarget target = new IntroTarget(viewId);\n")
+                .append("        target.shapeType = shapeType;\n")
+                .append("        target.shapeBorderColor = shapeBorderColor;\n")
+                .append("        target.highlightColor = highlightColor;\n")
+                .append("        target.arrowColor = arrowColor;\n")
+                .append("        target.arrowStrokeWidth = arrowStrokeWidth;\n")
+                .append("        return target;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        return hasErrors ? null : out.toString();
+    }
+
+    private void write(TypeElement type, String source)
+    {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String name = (packageName.isEmpty() ? "" : packageName + ".") + generatedName(type);
+
+        try {
+            Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter();
+            try {
+                writer.write(source);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR,
+                    "@IntroTour: could not write " + name + ": " + e.getMessage(), type);
+        }
+    }
+
+    /* R.id constant values to their qualified field names */
+    private Map<Integer, String> findIds(TypeElement type)
+    {
+        String packageName = processingEnv.getOptions().get(OPTION_R_PACKAGE);
+        if (packageName == null)
+            packageName = packageOf(type).getQualifiedName().toString();
+
+        while (true)
+        {
+            TypeElement rId = elements.getTypeElement(
+                    packageName.isEmpty() ? "R.id" : packageName + ".R.id");
+
+            if (rId != null)
+            {
+                Map<Integer, String> ids = new HashMap<Integer, String>();
+                for (Element field : rId.getEnclosedElements())
+                {
+                    if (!(field instanceof VariableElement)) continue;
+
+                    Object value = ((VariableElement) field).getConstantValue();
+                    if (value instanceof Integer)
+                        ids.put((Integer) value, rId.getQualifiedName() + "." + field.getSimpleName());
+                }
+                return ids;
+            }
+
+            if (packageName.isEmpty() || processingEnv.getOptions().containsKey(OPTION_R_PACKAGE))
+                return null;
+
+            int dot = packageName.lastIndexOf('.');
+            packageName = dot == -1 ? "" : packageName.substring(0, dot);
+        }
+    }
+
+    private Map<String, AnnotationValue> valuesOf(AnnotationMirror mirror)
+    {
+        Map<String, AnnotationValue> values = new HashMap<String, AnnotationValue>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(mirror).entrySet())
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        return values;
+    }
+
+    private static AnnotationMirror findMirror(Element element, String annotation)
+    {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors())
+            if (((TypeElement) mirror.getAnnotationType().asElement())
+                    .getQualifiedName().contentEquals(annotation))
+                return mirror;
+        return null;
+    }
+
+    private PackageElement packageOf(TypeElement type)
+    {
+        return elements.getPackageOf(type);
+    }
+
+    /* Outer.Inner becomes Outer_Inner_IntroTour */
+    private String generatedName(TypeElement type)
+    {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        if (!packageName.isEmpty())
+            binaryName = binaryName.substring(packageName.length() + 1);
+        return binaryName.replace('$', '_') + SUFFIX;
+    }
+
+    private void error(String message, Element element, AnnotationMirror mirror, AnnotationValue value)
+    {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element, mirror, value);
+    }
+
+    private static String color(AnnotationValue value)
+    {
+        int color = (Integer) value.getValue();
+        return color == -1 ? "-1" : String.format("0x%08x", color);
+    }
+
+    private static String literal(String value)
+    {
+        StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':  out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20 || c > 0x7e)
+                        out.append(String.format("\\u%04x", (int) c));
+                    else
+                        out.append(c);
+            }
+        }
+        return out.append('"').toString();
+    }
+}